@@ -90,4 +90,35 @@ public class ApplicationConfig {
 
         return executor;
     }
-}
\ No newline at end of file
+
+    @Bean(name = "notificationStreamExecutor")
+    public Executor notificationStreamExecutor() {
+        log.info("Настройка пула потоков для потоков уведомлений (SSE)");
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("SuperSTO-Sse-");
+        executor.initialize();
+
+        return executor;
+    }
+
+    @Bean(name = "notificationBroadcastExecutor")
+    public Executor notificationBroadcastExecutor() {
+        log.info("Настройка пула потоков для массовых рассылок уведомлений");
+
+        // Рассылки выполняются по одной: каждая сама ограничивает скорость записи
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("SuperSTO-Broadcast-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        return executor;
+    }
+}
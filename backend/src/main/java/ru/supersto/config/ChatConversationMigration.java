@@ -0,0 +1,79 @@
+package ru.supersto.config;
+
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+import ru.supersto.entity.ChatMessage;
+import ru.supersto.service.ConversationService;
+
+/**
+ * Заполнение conversation_id у сообщений, сохраненных до появления ключа переписки, и построение
+ * сводок переписок. Сообщения читаются курсором и обновляются пакетами; повторный запуск обрабатывает
+ * только оставшиеся.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatConversationMigration {
+
+    private static final String COLLECTION = "chat_messages";
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationService conversationService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillConversationIds() {
+        Query query = Query.query(Criteria.where("conversation_id").exists(false));
+        query.fields().include("sender", "recipient");
+        query.cursorBatchSize(BATCH_SIZE);
+
+        long updated = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+        int pending = 0;
+        try (CloseableIterator<Document> messages = mongoTemplate.stream(query, Document.class, COLLECTION)) {
+            while (messages.hasNext()) {
+                Document message = messages.next();
+                String senderId = referenceId(message.get("sender"));
+                String recipientId = referenceId(message.get("recipient"));
+                if (senderId == null || recipientId == null) {
+                    continue;
+                }
+
+                bulk.updateOne(Query.query(Criteria.where("_id").is(message.get("_id"))),
+                        Update.update("conversation_id", ChatMessage.conversationIdOf(senderId, recipientId)));
+                if (++pending == BATCH_SIZE) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            updated += bulk.execute().getModifiedCount();
+        }
+
+        if (updated > 0) {
+            log.info("Заполнен ключ переписки у {} сообщений чата", updated);
+        }
+
+        // Сводки для списка чатов строятся один раз по уже накопленным сообщениям
+        if (!conversationService.hasSummaries()) {
+            conversationService.rebuildSummaries();
+        }
+    }
+
+    private static String referenceId(Object reference) {
+        return reference instanceof DBRef dbRef ? String.valueOf(dbRef.getId()) : null;
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import ru.supersto.entity.*;
 import ru.supersto.repository.*;
+import ru.supersto.service.ConversationService;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -30,7 +31,12 @@ public class DataInitializer implements CommandLineRunner {
         private final OrderRepository orderRepository;
         private final ReviewRepository reviewRepository;
         private final ChatMessageRepository chatMessageRepository;
+        private final ConversationRepository conversationRepository;
+        private final ConversationService conversationService;
         private final NotificationRepository notificationRepository;
+        private final StockReservationRepository stockReservationRepository;
+        private final SlotClaimRepository slotClaimRepository;
+        private final WaitlistEntryRepository waitlistEntryRepository;
         private final PasswordEncoder passwordEncoder;
 
         private final Random random = new Random();
@@ -68,7 +74,11 @@ public class DataInitializer implements CommandLineRunner {
         private void clearAllData() {
                 log.info("🧹 Очистка существующих данных...");
                 notificationRepository.deleteAll();
+                stockReservationRepository.deleteAll();
+                slotClaimRepository.deleteAll();
+                waitlistEntryRepository.deleteAll();
                 chatMessageRepository.deleteAll();
+                conversationRepository.deleteAll();
                 reviewRepository.deleteAll();
                 orderRepository.deleteAll();
                 appointmentRepository.deleteAll();
@@ -585,6 +595,7 @@ public class DataInitializer implements CommandLineRunner {
                 }
 
                 chatMessageRepository.saveAll(messages);
+                conversationService.rebuildSummaries();
                 log.info("✅ Создано {} сообщений", chatMessageRepository.count());
         }
 
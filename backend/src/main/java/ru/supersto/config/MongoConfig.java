@@ -1,8 +1,13 @@
 package ru.supersto.config;
 
+import com.mongodb.WriteConcern;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
 import ru.supersto.entity.Appointment;
 import ru.supersto.entity.ChatMessage;
@@ -11,16 +16,44 @@ import ru.supersto.entity.Order;
 import ru.supersto.entity.Product;
 import ru.supersto.entity.Review;
 import ru.supersto.entity.Service;
+import ru.supersto.entity.StockReservation;
 import ru.supersto.entity.User;
+import ru.supersto.entity.WaitlistEntry;
 
 @Configuration
 public class MongoConfig extends AbstractMongoClientConfiguration {
 
+    @Value("${app.chat.write-concern:ACKNOWLEDGED}")
+    private String chatWriteConcernName;
+
     @Override
     protected String getDatabaseName() {
         return "supersto_db";
     }
 
+    // Индексы из @Indexed/@CompoundIndex создаются выборочно в MongoIndexInitializer
+    @Override
+    protected boolean autoIndexCreation() {
+        return false;
+    }
+
+    /**
+     * Гарантия записи сообщений чата настраивается отдельно от остальных коллекций
+     */
+    @Bean
+    @Override
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory databaseFactory, MappingMongoConverter converter) {
+        MongoTemplate template = super.mongoTemplate(databaseFactory, converter);
+        WriteConcern chatWriteConcern = WriteConcern.valueOf(chatWriteConcernName);
+        if (chatWriteConcern == null) {
+            throw new IllegalStateException("Неизвестный уровень записи сообщений чата: " + chatWriteConcernName);
+        }
+        template.setWriteConcernResolver(action -> ChatMessage.class.equals(action.getEntityType())
+                ? chatWriteConcern
+                : action.getDefaultWriteConcern());
+        return template;
+    }
+
     @Bean
     public BeforeConvertCallback<User> userBeforeConvertCallback() {
         return (entity, collection) -> {
@@ -84,4 +117,20 @@ public class MongoConfig extends AbstractMongoClientConfiguration {
             return entity;
         };
     }
-}
\ No newline at end of file
+
+    @Bean
+    public BeforeConvertCallback<StockReservation> stockReservationBeforeConvertCallback() {
+        return (entity, collection) -> {
+            entity.prePersist();
+            return entity;
+        };
+    }
+
+    @Bean
+    public BeforeConvertCallback<WaitlistEntry> waitlistEntryBeforeConvertCallback() {
+        return (entity, collection) -> {
+            entity.prePersist();
+            return entity;
+        };
+    }
+}
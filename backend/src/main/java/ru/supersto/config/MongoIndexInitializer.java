@@ -0,0 +1,54 @@
+package ru.supersto.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+import ru.supersto.entity.Appointment;
+import ru.supersto.entity.ChatMessage;
+import ru.supersto.entity.Conversation;
+import ru.supersto.entity.Notification;
+import ru.supersto.entity.SlotClaim;
+import ru.supersto.entity.StockReservation;
+import ru.supersto.entity.WaitlistEntry;
+
+import java.util.List;
+
+/**
+ * Создание индексов перечисленных коллекций при запуске.
+ * Автоматическое создание индексов выключено: оно включило бы и давно объявленные уникальные индексы
+ * (users.email, products.part_number, service_stations.name), которые на существующих данных с дублями
+ * не дают приложению запуститься. Такие индексы создаются отдельной миграцией после очистки дублей.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(
+            StockReservation.class,
+            SlotClaim.class,
+            Appointment.class,
+            WaitlistEntry.class,
+            ChatMessage.class,
+            Conversation.class,
+            Notification.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(
+                mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entity : INDEXED_ENTITIES) {
+            IndexOperations indexOps = mongoTemplate.indexOps(entity);
+            resolver.resolveIndexFor(entity).forEach(indexOps::ensureIndex);
+        }
+        log.info("Проверены индексы {} коллекций", INDEXED_ENTITIES.size());
+    }
+}
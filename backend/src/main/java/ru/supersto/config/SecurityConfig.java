@@ -1,5 +1,6 @@
 package ru.supersto.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -86,6 +87,10 @@ public class SecurityConfig {
                         .requestMatchers("/actuator/health", "/actuator/info").permitAll()
                         .requestMatchers(Constants.ApiPaths.API_PREFIX + "/health/**").permitAll()
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
+                        // Завершение асинхронных ответов (SSE): исходный запрос уже прошел проверку
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        // WebSocket: токен проверяется в кадре STOMP CONNECT
+                        .requestMatchers(Constants.WebSocket.ENDPOINT + "/**").permitAll()
                         .requestMatchers("GET", Constants.ApiPaths.API_PREFIX + Constants.ApiPaths.SERVICES + "/**")
                         .permitAll()
                         .requestMatchers("GET", Constants.ApiPaths.API_PREFIX + Constants.ApiPaths.PRODUCTS + "/**")
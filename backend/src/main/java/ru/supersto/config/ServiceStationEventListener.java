@@ -0,0 +1,29 @@
+package ru.supersto.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+import ru.supersto.entity.ServiceStation;
+import ru.supersto.service.WorkingHoursService;
+
+/**
+ * Сброс шаблонов рабочего времени при сохранении или удалении станции
+ */
+@Component
+@RequiredArgsConstructor
+public class ServiceStationEventListener extends AbstractMongoEventListener<ServiceStation> {
+
+    private final WorkingHoursService workingHoursService;
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<ServiceStation> event) {
+        workingHoursService.invalidate();
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<ServiceStation> event) {
+        workingHoursService.invalidate();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.supersto.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+import ru.supersto.entity.Appointment;
+import ru.supersto.entity.AppointmentStatus;
+import ru.supersto.entity.SlotClaim;
+import ru.supersto.service.ServiceService;
+import ru.supersto.service.SlotClaimService;
+import ru.supersto.util.Constants;
+import ru.supersto.util.DateUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Захват слотов для записей, созданных до появления slot_claims.
+ * Без захватов уникальный индекс не защищает время таких записей, и новая запись может его занять.
+ * Будущие записи читаются курсором и обрабатываются пакетами; записи, у которых захваты уже есть,
+ * пропускаются, поэтому повторный запуск дозахватывает только оставшиеся.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SlotClaimMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final SlotClaimService slotClaimService;
+    private final ServiceService serviceService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSlotClaims() {
+        Query query = Query.query(Criteria.where("appointmentDate").gte(DateUtils.nowInMoscow())
+                .and("master").ne(null)
+                .and("status").ne(AppointmentStatus.CANCELLED));
+        query.fields().include("master", "service", "appointmentDate");
+        query.cursorBatchSize(BATCH_SIZE);
+
+        long claimed = 0;
+        List<Appointment> batch = new ArrayList<>(BATCH_SIZE);
+        try (CloseableIterator<Appointment> appointments = mongoTemplate.stream(query, Appointment.class)) {
+            while (appointments.hasNext()) {
+                batch.add(appointments.next());
+                if (batch.size() == BATCH_SIZE) {
+                    claimed += claimBatch(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            claimed += claimBatch(batch);
+        }
+
+        if (claimed > 0) {
+            log.info("Захвачено {} слотов существующих записей", claimed);
+        }
+    }
+
+    private long claimBatch(List<Appointment> batch) {
+        Set<String> claimedIds = new HashSet<>(mongoTemplate.findDistinct(
+                Query.query(Criteria.where("appointmentId").in(batch.stream().map(Appointment::getId).toList())),
+                "appointmentId", SlotClaim.class, String.class));
+        List<Appointment> unclaimed = batch.stream()
+                .filter(appointment -> !claimedIds.contains(appointment.getId()))
+                .toList();
+        if (unclaimed.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> serviceIds = unclaimed.stream()
+                .map(Appointment::resolveServiceId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Integer> durations = serviceIds.isEmpty() ? Map.of() : serviceService.findDurationsByIds(serviceIds);
+
+        return slotClaimService.claimExisting(unclaimed.stream()
+                .map(appointment -> new SlotClaimService.ClaimRequest(
+                        appointment.resolveMasterId(),
+                        appointment.getAppointmentDate(),
+                        durations.getOrDefault(appointment.resolveServiceId(),
+                                Constants.Defaults.DEFAULT_SERVICE_DURATION),
+                        appointment.getId()))
+                .toList());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.supersto.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import ru.supersto.security.JwtChannelInterceptor;
+import ru.supersto.util.Constants;
+
+import java.util.List;
+
+/**
+ * STOMP поверх WebSocket для доставки сообщений чата без опроса.
+ * Клиент подписывается на /user/queue/chat и /user/queue/chat.read после CONNECT с JWT.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private final JwtChannelInterceptor jwtChannelInterceptor;
+    private final TaskScheduler messageBrokerTaskScheduler;
+
+    @Value("${app.cors.allowed-origins:http://localhost:3000,http://localhost:3001}")
+    private List<String> allowedOrigins;
+
+    @Value("${app.websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    // Планировщик брокера - бин контекста, он запускается и останавливается вместе с приложением;
+    // @Lazy разрывает цикл: бин объявлен той же конфигурацией брокера, которую настраивает этот класс
+    public WebSocketConfig(JwtChannelInterceptor jwtChannelInterceptor,
+            @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler messageBrokerTaskScheduler) {
+        this.jwtChannelInterceptor = jwtChannelInterceptor;
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint(Constants.WebSocket.ENDPOINT)
+                .setAllowedOriginPatterns(allowedOrigins.toArray(String[]::new));
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker(Constants.WebSocket.BROKER_PREFIX)
+                .setHeartbeatValue(new long[] { heartbeatMs, heartbeatMs })
+                .setTaskScheduler(messageBrokerTaskScheduler);
+        registry.setApplicationDestinationPrefixes(Constants.WebSocket.APP_PREFIX);
+        registry.setUserDestinationPrefix(Constants.WebSocket.USER_PREFIX);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(jwtChannelInterceptor);
+    }
+}
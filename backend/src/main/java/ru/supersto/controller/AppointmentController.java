@@ -11,9 +11,20 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import ru.supersto.dto.AppointmentDTO;
+import ru.supersto.dto.AutoAssignmentResultDTO;
+import ru.supersto.dto.AvailableSlotDTO;
+import ru.supersto.dto.BulkAppointmentRequest;
+import ru.supersto.dto.BulkAppointmentResultDTO;
+import ru.supersto.dto.CombinedAppointmentRequest;
+import ru.supersto.dto.CombinedSlotOptionDTO;
+import ru.supersto.dto.WaitlistEntryDTO;
 import ru.supersto.entity.AppointmentStatus;
+import ru.supersto.service.AppointmentBatchService;
 import ru.supersto.service.AppointmentService;
+import ru.supersto.service.SlotSearchService;
+import ru.supersto.service.WaitlistService;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -26,6 +37,9 @@ import java.util.List;
 public class AppointmentController {
 
     private final AppointmentService appointmentService;
+    private final SlotSearchService slotSearchService;
+    private final AppointmentBatchService appointmentBatchService;
+    private final WaitlistService waitlistService;
 
     @GetMapping
     @Operation(summary = "Получить все записи")
@@ -100,6 +114,24 @@ public class AppointmentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdAppointment);
     }
 
+    @PostMapping("/bulk")
+    @Operation(summary = "Создать серию записей по списку или правилу повторения")
+    @PreAuthorize("hasRole('CLIENT') or hasRole('ADMIN')")
+    public ResponseEntity<List<BulkAppointmentResultDTO>> createAppointmentsBulk(
+            @Valid @RequestBody BulkAppointmentRequest request) {
+        List<BulkAppointmentResultDTO> results = appointmentBatchService.createAppointments(request);
+        return ResponseEntity.ok(results);
+    }
+
+    @PostMapping("/combined")
+    @Operation(summary = "Записаться на несколько услуг подряд к одному мастеру")
+    @PreAuthorize("hasRole('CLIENT') or hasRole('ADMIN')")
+    public ResponseEntity<List<AppointmentDTO>> createCombinedAppointment(
+            @Valid @RequestBody CombinedAppointmentRequest request) {
+        List<AppointmentDTO> createdAppointments = appointmentService.createCombinedAppointment(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdAppointments);
+    }
+
     @PutMapping("/{id}/status")
     @Operation(summary = "Изменить статус записи")
     @PreAuthorize("hasRole('MASTER') or hasRole('ADMIN')")
@@ -120,6 +152,16 @@ public class AppointmentController {
         return ResponseEntity.ok(updatedAppointment);
     }
 
+    @PostMapping("/auto-assign")
+    @Operation(summary = "Автоматически назначить мастеров на ожидающие записи периода")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AutoAssignmentResultDTO> autoAssignMasters(
+            @RequestParam LocalDateTime from,
+            @RequestParam LocalDateTime to) {
+        AutoAssignmentResultDTO result = appointmentBatchService.autoAssignMasters(from, to);
+        return ResponseEntity.ok(result);
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Удалить запись")
     @PreAuthorize("hasRole('CLIENT') or hasRole('ADMIN')")
@@ -132,11 +174,57 @@ public class AppointmentController {
     @Operation(summary = "Получить доступные слоты мастера")
     public ResponseEntity<List<LocalDateTime>> getAvailableSlots(
             @PathVariable String masterId,
-            @RequestParam LocalDateTime date) {
-        List<LocalDateTime> availableSlots = appointmentService.getAvailableSlots(masterId, date);
+            @RequestParam LocalDateTime date,
+            @RequestParam(required = false) String serviceId) {
+        List<LocalDateTime> availableSlots = appointmentService.getAvailableSlots(masterId, date, serviceId);
         return ResponseEntity.ok(availableSlots);
     }
 
+    @GetMapping("/next-available")
+    @Operation(summary = "Найти ближайшие свободные слоты услуги у всех мастеров")
+    public ResponseEntity<List<AvailableSlotDTO>> getNextAvailableSlots(
+            @RequestParam String serviceId,
+            @RequestParam(required = false) LocalDateTime from,
+            @RequestParam(defaultValue = "7") int days,
+            @RequestParam(defaultValue = "5") int limit) {
+        List<AvailableSlotDTO> slots = slotSearchService.findNextAvailable(serviceId, from, days, limit);
+        return ResponseEntity.ok(slots);
+    }
+
+    @GetMapping("/combined-options")
+    @Operation(summary = "Найти варианты записи на несколько услуг подряд к одному мастеру")
+    public ResponseEntity<List<CombinedSlotOptionDTO>> getCombinedOptions(
+            @RequestParam List<String> serviceIds,
+            @RequestParam LocalDate date,
+            @RequestParam(defaultValue = "1") int days,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<CombinedSlotOptionDTO> options = slotSearchService.findCombinedOptions(serviceIds, date, days, limit);
+        return ResponseEntity.ok(options);
+    }
+
+    @PostMapping("/waitlist")
+    @Operation(summary = "Встать в лист ожидания к мастеру на день")
+    @PreAuthorize("hasRole('CLIENT')")
+    public ResponseEntity<WaitlistEntryDTO> joinWaitlist(@Valid @RequestBody WaitlistEntryDTO entryDTO) {
+        WaitlistEntryDTO entry = waitlistService.join(entryDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).body(entry);
+    }
+
+    @GetMapping("/waitlist/my")
+    @Operation(summary = "Получить заявки текущего клиента в листе ожидания")
+    @PreAuthorize("hasRole('CLIENT')")
+    public ResponseEntity<List<WaitlistEntryDTO>> getMyWaitlistEntries() {
+        return ResponseEntity.ok(waitlistService.getMyEntries());
+    }
+
+    @DeleteMapping("/waitlist/{id}")
+    @Operation(summary = "Покинуть лист ожидания")
+    @PreAuthorize("hasRole('CLIENT') or hasRole('ADMIN')")
+    public ResponseEntity<Void> leaveWaitlist(@PathVariable String id) {
+        waitlistService.leave(id);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/statuses")
     @Operation(summary = "Получить все статусы записей")
     public ResponseEntity<AppointmentStatus[]> getAllAppointmentStatuses() {
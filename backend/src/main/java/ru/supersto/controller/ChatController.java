@@ -11,6 +11,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import ru.supersto.dto.ChatMessageDTO;
+import ru.supersto.dto.ChatMessagePageDTO;
+import ru.supersto.dto.ConversationDTO;
 import ru.supersto.service.ChatService;
 
 import java.time.LocalDateTime;
@@ -50,6 +52,25 @@ public class ChatController {
         return ResponseEntity.ok(conversation);
     }
 
+    @GetMapping("/conversation/{otherUserId}/messages")
+    @Operation(summary = "Получить страницу переписки с пользователем")
+    @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
+    public ResponseEntity<ChatMessagePageDTO> getConversationPage(
+            @PathVariable String otherUserId,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "30") int limit) {
+        ChatMessagePageDTO page = chatService.getConversationPage(otherUserId, before, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @PutMapping("/conversation/{otherUserId}/read")
+    @Operation(summary = "Отметить переписку с пользователем как прочитанную")
+    @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
+    public ResponseEntity<Long> markConversationAsRead(@PathVariable String otherUserId) {
+        long marked = chatService.markConversationAsRead(otherUserId);
+        return ResponseEntity.ok(marked);
+    }
+
     @GetMapping("/conversation/{otherUserId}/history")
     @Operation(summary = "Получить историю переписки за период")
     @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
@@ -64,16 +85,16 @@ public class ChatController {
     @GetMapping("/my-chats")
     @Operation(summary = "Получить все мои чаты")
     @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
-    public ResponseEntity<List<ChatMessageDTO>> getMyChats() {
-        List<ChatMessageDTO> chats = chatService.getMyChats();
+    public ResponseEntity<List<ConversationDTO>> getMyChats() {
+        List<ConversationDTO> chats = chatService.getMyChats();
         return ResponseEntity.ok(chats);
     }
 
     @GetMapping("/conversations")
     @Operation(summary = "Получить все мои переписки")
     @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
-    public ResponseEntity<List<ChatMessageDTO>> getConversations() {
-        List<ChatMessageDTO> chats = chatService.getMyChats();
+    public ResponseEntity<List<ConversationDTO>> getConversations() {
+        List<ConversationDTO> chats = chatService.getMyChats();
         return ResponseEntity.ok(chats);
     }
 
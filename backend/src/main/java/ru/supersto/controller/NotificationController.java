@@ -9,13 +9,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.supersto.dto.NotificationBroadcastDTO;
+import ru.supersto.dto.NotificationBroadcastRequest;
 import ru.supersto.dto.NotificationDTO;
 import ru.supersto.entity.Notification;
 import ru.supersto.entity.User;
+import ru.supersto.service.NotificationBroadcastService;
 import ru.supersto.service.NotificationService;
+import ru.supersto.service.NotificationStreamService;
 import ru.supersto.service.UserService;
 import ru.supersto.util.Constants;
 import ru.supersto.util.ResponseUtils;
@@ -32,6 +38,8 @@ import java.util.stream.Collectors;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationStreamService notificationStreamService;
+    private final NotificationBroadcastService notificationBroadcastService;
     private final UserService userService;
 
     @GetMapping
@@ -63,6 +71,15 @@ public class NotificationController {
         return ResponseUtils.success(notificationDTOs);
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Поток новых уведомлений (Server-Sent Events)")
+    @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
+    public SseEmitter streamNotifications(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        User currentUser = userService.getCurrentUser();
+        return notificationStreamService.subscribe(currentUser, lastEventId);
+    }
+
     @GetMapping("/unread/count")
     @Operation(summary = "Получить количество непрочитанных уведомлений")
     @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
@@ -84,10 +101,28 @@ public class NotificationController {
     @PutMapping("/read-all")
     @Operation(summary = "Отметить все уведомления как прочитанные")
     @PreAuthorize("hasRole('CLIENT') or hasRole('MASTER') or hasRole('ADMIN')")
-    public ResponseEntity<ResponseUtils.ApiResponse<String>> markAllAsRead() {
+    public ResponseEntity<ResponseUtils.ApiResponse<Long>> markAllAsRead() {
         User currentUser = userService.getCurrentUser();
-        notificationService.markAllAsRead(currentUser);
-        return ResponseUtils.success("success", "Все уведомления отмечены как прочитанные");
+        long marked = notificationService.markAllAsRead(currentUser);
+        return ResponseUtils.success(marked, "Все уведомления отмечены как прочитанные");
+    }
+
+    @PostMapping("/broadcast")
+    @Operation(summary = "Запустить массовую рассылку уведомления по ролям и сегменту")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseUtils.ApiResponse<NotificationBroadcastDTO>> startBroadcast(
+            @Valid @RequestBody NotificationBroadcastRequest request) {
+        NotificationBroadcastDTO broadcast = notificationBroadcastService.start(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new ResponseUtils.ApiResponse<>(true, "Рассылка поставлена в очередь", broadcast));
+    }
+
+    @GetMapping("/broadcast/{broadcastId}")
+    @Operation(summary = "Ход массовой рассылки")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseUtils.ApiResponse<NotificationBroadcastDTO>> getBroadcastProgress(
+            @PathVariable String broadcastId) {
+        return ResponseUtils.success(notificationBroadcastService.getProgress(broadcastId));
     }
 
     @DeleteMapping("/cleanup")
@@ -74,6 +74,16 @@ public class ProductController {
         return ResponseUtils.success(product);
     }
 
+    @GetMapping("/{id}/availability")
+    @Operation(summary = "Получить доступный остаток продукта")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Остаток получен"),
+            @ApiResponse(responseCode = "404", description = "Продукт не найден")
+    })
+    public ResponseEntity<Integer> getProductAvailability(@PathVariable String id) {
+        return ResponseEntity.ok(productService.getAvailableQuantity(id));
+    }
+
     @GetMapping("/part-number/{partNumber}")
     @Operation(summary = "Получить продукт по артикулу")
     public ResponseEntity<ProductDTO> getProductByPartNumber(@PathVariable String partNumber) {
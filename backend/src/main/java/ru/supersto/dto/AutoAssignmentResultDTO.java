@@ -0,0 +1,15 @@
+package ru.supersto.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AutoAssignmentResultDTO {
+
+    private int processed; // Записей в статусе PENDING без мастера
+    private int assigned; // Записей, получивших мастера
+    private List<String> unassignedAppointmentIds; // Для них не нашлось свободного мастера
+}
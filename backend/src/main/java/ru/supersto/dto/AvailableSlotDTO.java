@@ -0,0 +1,17 @@
+package ru.supersto.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class AvailableSlotDTO {
+
+    private String masterId;
+    private String masterName;
+    private String serviceId;
+    private LocalDateTime start; // Начало свободного интервала
+    private LocalDateTime end; // Окончание услуги
+}
@@ -0,0 +1,71 @@
+package ru.supersto.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import ru.supersto.util.Constants;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Пакетное создание записей: явный список записей или правило повторения
+ */
+@Data
+public class BulkAppointmentRequest {
+
+    @NotBlank(message = "ID клиента обязателен")
+    private String clientId;
+
+    @NotBlank(message = "ID услуги обязателен")
+    private String serviceId; // Услуга по умолчанию для всех записей
+
+    private String masterId; // Мастер по умолчанию для всех записей
+
+    private String description;
+
+    @Valid
+    private Recurrence recurrence;
+
+    @Valid
+    @Size(max = Constants.Limits.MAX_BULK_APPOINTMENTS,
+            message = "Не более " + Constants.Limits.MAX_BULK_APPOINTMENTS + " записей за один запрос")
+    private List<Booking> bookings;
+
+    @Data
+    public static class Recurrence {
+
+        @NotNull(message = "Дата первой записи обязательна")
+        @Future(message = "Дата первой записи должна быть в будущем")
+        private LocalDateTime start;
+
+        @Min(value = 1, message = "Интервал повторения - не менее 1 дня")
+        private int intervalDays = 7;
+
+        @Min(value = 1, message = "Количество повторений - не менее 1")
+        @Max(value = 52, message = "Количество повторений - не более 52")
+        private int occurrences = 1;
+
+        @Min(value = 1, message = "Количество записей на дату - не менее 1")
+        @Max(value = 50, message = "Количество записей на дату - не более 50")
+        private int perOccurrence = 1; // Например, несколько автомобилей одного клиента
+    }
+
+    @Data
+    public static class Booking {
+
+        @NotNull(message = "Дата и время записи обязательны")
+        private LocalDateTime appointmentDate;
+
+        private String serviceId;
+
+        private String masterId;
+
+        private String description;
+    }
+}
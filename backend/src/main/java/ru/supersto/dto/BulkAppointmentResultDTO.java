@@ -0,0 +1,18 @@
+package ru.supersto.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class BulkAppointmentResultDTO {
+
+    private int index; // Порядковый номер записи в запросе
+    private LocalDateTime appointmentDate;
+    private String masterId;
+    private boolean success;
+    private String appointmentId;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package ru.supersto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница переписки от новых сообщений к старым
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessagePageDTO {
+
+    private List<ChatMessageDTO> messages;
+    private String nextCursor; // Передается в before для следующей страницы (null - сообщений больше нет)
+}
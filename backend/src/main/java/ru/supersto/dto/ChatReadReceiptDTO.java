@@ -0,0 +1,22 @@
+package ru.supersto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отметка о прочтении, отправляемая автору сообщений
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatReadReceiptDTO {
+
+    private String readerId; // Кто прочитал
+    private String messageId; // null - прочитаны все сообщения переписки до readAt
+    private LocalDateTime readAt;
+}
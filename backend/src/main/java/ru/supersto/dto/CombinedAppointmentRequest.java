@@ -0,0 +1,34 @@
+package ru.supersto.dto;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запись на несколько услуг подряд к одному мастеру
+ */
+@Data
+public class CombinedAppointmentRequest {
+
+    @NotBlank(message = "ID клиента обязателен")
+    private String clientId;
+
+    @NotEmpty(message = "Укажите хотя бы одну услугу")
+    @Size(max = 10, message = "Не более 10 услуг в одной записи")
+    private List<String> serviceIds;
+
+    @NotBlank(message = "ID мастера обязателен")
+    private String masterId;
+
+    @NotNull(message = "Дата и время записи обязательны")
+    @Future(message = "Дата записи должна быть в будущем")
+    private LocalDateTime start;
+
+    private String description;
+}
@@ -0,0 +1,20 @@
+package ru.supersto.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class CombinedSlotOptionDTO {
+
+    private String masterId;
+    private String masterName;
+    private List<String> serviceIds; // Услуги в порядке выполнения
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private int totalDuration; // Общая длительность в минутах
+    private int idleMinutes; // Остаток свободного промежутка после комплекса
+}
@@ -0,0 +1,35 @@
+package ru.supersto.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.supersto.entity.ChatMessageType;
+import ru.supersto.entity.UserRole;
+
+import java.time.LocalDateTime;
+
+/**
+ * Элемент списка чатов пользователя
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationDTO {
+
+    private String conversationId;
+
+    private String otherUserId;
+    private String otherUserName;
+    private String otherUserEmail;
+    private UserRole otherUserRole;
+
+    private String lastMessageId;
+    private String lastMessagePreview;
+    private ChatMessageType lastMessageType;
+    private String lastSenderId;
+    private LocalDateTime lastMessageAt;
+
+    private long unreadCount;
+}
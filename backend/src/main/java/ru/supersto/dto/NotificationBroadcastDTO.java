@@ -0,0 +1,29 @@
+package ru.supersto.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class NotificationBroadcastDTO {
+
+    public enum Status {
+        QUEUED, // Ожидает свободного потока рассылки
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private String id;
+    private String title;
+    private Status status;
+    private long totalRecipients; // Оценка на момент запуска
+    private long processed; // Получатели, прочитанные из базы
+    private long sent; // Записанные уведомления
+    private long failed; // Уведомления, не записанные из-за ошибок
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
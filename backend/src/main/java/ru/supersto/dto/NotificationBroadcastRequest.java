@@ -0,0 +1,34 @@
+package ru.supersto.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+import ru.supersto.entity.LoyaltyLevel;
+import ru.supersto.entity.NotificationType;
+import ru.supersto.entity.UserRole;
+
+import java.util.Set;
+
+/**
+ * Массовая рассылка уведомления по ролям и сегменту пользователей
+ */
+@Data
+public class NotificationBroadcastRequest {
+
+    @NotBlank(message = "Заголовок обязателен")
+    private String title;
+
+    @NotBlank(message = "Сообщение обязательно")
+    private String message;
+
+    private NotificationType type = NotificationType.INFO;
+
+    private Set<UserRole> roles; // Пусто - все роли
+
+    private Set<LoyaltyLevel> loyaltyLevels; // Пусто - любой уровень лояльности
+
+    private boolean activeOnly = true; // Только активные пользователи
+
+    private String referenceId;
+    private String referenceType;
+    private String actionUrl;
+}
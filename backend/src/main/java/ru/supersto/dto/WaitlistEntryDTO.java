@@ -0,0 +1,37 @@
+package ru.supersto.dto;
+
+import jakarta.validation.constraints.FutureOrPresent;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.supersto.entity.WaitlistStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntryDTO {
+
+    private String id;
+
+    @NotBlank(message = "ID мастера обязателен")
+    private String masterId;
+
+    @NotBlank(message = "ID услуги обязателен")
+    private String serviceId;
+
+    @NotNull(message = "Желаемая дата обязательна")
+    @FutureOrPresent(message = "Желаемая дата не может быть в прошлом")
+    private LocalDate desiredDate;
+
+    // Информация для отображения (не для создания)
+    private WaitlistStatus status;
+    private LocalDateTime offeredSlot;
+    private LocalDateTime createdAt;
+}
@@ -5,14 +5,22 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Document(collection = "appointments")
+@CompoundIndexes({
+        @CompoundIndex(name = "master_date_idx", def = "{'master.$id': 1, 'appointment_date': 1}"),
+        @CompoundIndex(name = "status_date_idx", def = "{'status': 1, 'appointment_date': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -22,13 +30,14 @@ public class Appointment {
     @Id
     private String id;
 
-    @DBRef
+    // Клиент, мастер и услуга подгружаются по требованию: индексу занятости и напоминаниям достаточно их ID
+    @DBRef(lazy = true)
     private User client;
 
-    @DBRef
+    @DBRef(lazy = true)
     private User master;
 
-    @DBRef
+    @DBRef(lazy = true)
     private Service service;
 
     @Field("appointment_date")
@@ -47,6 +56,39 @@ public class Appointment {
     @Field("completed_at")
     private LocalDateTime completedAt;
 
+    @Field("reminders_sent")
+    private Set<ReminderType> remindersSent; // Уже отправленные напоминания
+
+    /**
+     * ID клиента без загрузки ленивой ссылки
+     */
+    public String resolveClientId() {
+        if (client instanceof LazyLoadingProxy proxy) {
+            return String.valueOf(proxy.toDBRef().getId());
+        }
+        return client != null ? client.getId() : null;
+    }
+
+    /**
+     * ID мастера без загрузки ленивой ссылки
+     */
+    public String resolveMasterId() {
+        if (master instanceof LazyLoadingProxy proxy) {
+            return String.valueOf(proxy.toDBRef().getId());
+        }
+        return master != null ? master.getId() : null;
+    }
+
+    /**
+     * ID услуги без загрузки ленивой ссылки
+     */
+    public String resolveServiceId() {
+        if (service instanceof LazyLoadingProxy proxy) {
+            return String.valueOf(proxy.toDBRef().getId());
+        }
+        return service != null ? service.getId() : null;
+    }
+
     public void prePersist() {
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
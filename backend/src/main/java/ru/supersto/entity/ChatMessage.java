@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -12,6 +15,10 @@ import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
 
 @Document(collection = "chat_messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "conversation_created_idx", def = "{'conversation_id': 1, 'created_at': -1, '_id': -1}"),
+        @CompoundIndex(name = "recipient_read_idx", def = "{'recipient.$id': 1, 'is_read': 1}")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,12 +28,16 @@ public class ChatMessage {
     @Id
     private String id;
 
-    @DBRef
+    // Участники подгружаются по требованию: в переписке их всего двое, и они уже известны
+    @DBRef(lazy = true)
     private User sender;
 
-    @DBRef
+    @DBRef(lazy = true)
     private User recipient;
 
+    @Field("conversation_id")
+    private String conversationId; // Упорядоченная пара ID участников
+
     private String content;
 
     private ChatMessageType type; // TEXT, IMAGE, FILE
@@ -50,6 +61,36 @@ public class ChatMessage {
         if (isRead == null) {
             isRead = false;
         }
+        if (conversationId == null && sender != null && recipient != null) {
+            conversationId = conversationIdOf(resolveSenderId(), resolveRecipientId());
+        }
+    }
+
+    /**
+     * Ключ переписки двух пользователей, не зависящий от направления сообщения
+     */
+    public static String conversationIdOf(String userId1, String userId2) {
+        return userId1.compareTo(userId2) <= 0 ? userId1 + "_" + userId2 : userId2 + "_" + userId1;
+    }
+
+    /**
+     * ID отправителя без загрузки ленивой ссылки
+     */
+    public String resolveSenderId() {
+        if (sender instanceof LazyLoadingProxy proxy) {
+            return String.valueOf(proxy.toDBRef().getId());
+        }
+        return sender != null ? sender.getId() : null;
+    }
+
+    /**
+     * ID получателя без загрузки ленивой ссылки
+     */
+    public String resolveRecipientId() {
+        if (recipient instanceof LazyLoadingProxy proxy) {
+            return String.valueOf(proxy.toDBRef().getId());
+        }
+        return recipient != null ? recipient.getId() : null;
     }
 
     public void markAsRead() {
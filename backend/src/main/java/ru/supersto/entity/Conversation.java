@@ -0,0 +1,53 @@
+package ru.supersto.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сводка переписки двух пользователей для списка чатов.
+ * ID совпадает с conversationId сообщений; сводка обновляется атомарно при отправке и прочтении.
+ */
+@Document(collection = "conversations")
+@CompoundIndex(name = "participants_last_message_idx", def = "{'participant_ids': 1, 'last_message_at': -1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Conversation {
+
+    @Id
+    private String id;
+
+    @Field("participant_ids")
+    private List<String> participantIds;
+
+    @Field("last_message_id")
+    private String lastMessageId;
+
+    @Field("last_message_preview")
+    private String lastMessagePreview;
+
+    @Field("last_message_type")
+    private ChatMessageType lastMessageType;
+
+    @Field("last_sender_id")
+    private String lastSenderId;
+
+    @Field("last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    private Map<String, Long> unread; // Непрочитанные сообщения по ID участника
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -12,6 +14,7 @@ import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
 
 @Document(collection = "notifications")
+@CompoundIndex(name = "recipient_read_created_idx", def = "{'recipient.$id': 1, 'is_read': 1, 'created_at': -1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -47,6 +50,7 @@ public class Notification {
     private LocalDateTime readAt;
 
     @Field("expires_at")
+    @Indexed(name = "expires_at_ttl_idx", expireAfter = "0s") // Истекшие уведомления удаляет MongoDB
     private LocalDateTime expiresAt; // Дата истечения уведомления
 
     public void prePersist() {
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.convert.LazyLoadingProxy;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -15,7 +16,8 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class OrderItem {
 
-    @DBRef
+    // Товары подгружаются пакетно по ID, а не отдельным запросом на каждую позицию
+    @DBRef(lazy = true)
     private Product product;
 
     private Integer quantity;
@@ -26,6 +28,16 @@ public class OrderItem {
     @Field("total_price")
     private BigDecimal totalPrice;
 
+    /**
+     * ID товара без загрузки ленивой ссылки
+     */
+    public String resolveProductId() {
+        if (product instanceof LazyLoadingProxy proxy) {
+            return String.valueOf(proxy.toDBRef().getId());
+        }
+        return product != null ? product.getId() : null;
+    }
+
     public void calculateTotalPrice() {
         if (unitPrice != null && quantity != null) {
             totalPrice = unitPrice.multiply(BigDecimal.valueOf(quantity));
@@ -0,0 +1,16 @@
+package ru.supersto.entity;
+
+public enum ReminderType {
+    DAY_BEFORE(24 * 60), // За сутки до записи
+    TWO_HOURS(2 * 60); // За 2 часа до записи
+
+    private final int leadMinutes;
+
+    ReminderType(int leadMinutes) {
+        this.leadMinutes = leadMinutes;
+    }
+
+    public int getLeadMinutes() {
+        return leadMinutes;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.supersto.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * Захват одного 5-минутного слота мастера записью.
+ * Уникальный индекс по (мастер, начало слота) не дает двум записям занять одно время даже на разных узлах.
+ */
+@Document(collection = "slot_claims")
+@CompoundIndex(name = "master_slot_idx", def = "{'master_id': 1, 'slot_start': 1}", unique = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotClaim {
+
+    @Id
+    private String id;
+
+    @Field("master_id")
+    private String masterId;
+
+    @Indexed(name = "slot_start_ttl_idx", expireAfter = "1d") // Прошедшие слоты удаляются MongoDB автоматически
+    @Field("slot_start")
+    private LocalDateTime slotStart;
+
+    @Indexed
+    @Field("appointment_id")
+    private String appointmentId;
+}
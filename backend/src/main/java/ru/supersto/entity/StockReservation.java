@@ -0,0 +1,57 @@
+package ru.supersto.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Document(collection = "stock_reservations")
+@CompoundIndex(name = "status_expires_idx", def = "{'status': 1, 'expires_at': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    @Field("order_id")
+    private String orderId;
+
+    private List<StockReservationItem> items;
+
+    private StockReservationStatus status;
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+
+    @Field("expires_at")
+    private LocalDateTime expiresAt; // Срок удержания товара для неподтвержденного заказа
+
+    @Field("confirmed_at")
+    private LocalDateTime confirmedAt;
+
+    // Снятые резервы удаляются самой MongoDB через 30 дней
+    @Indexed(expireAfter = "30d")
+    @Field("released_at")
+    private LocalDateTime releasedAt;
+
+    public void prePersist() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (status == null) {
+            status = StockReservationStatus.HELD;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.supersto.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationItem {
+
+    @Field("product_id")
+    private String productId;
+
+    private Integer quantity;
+}
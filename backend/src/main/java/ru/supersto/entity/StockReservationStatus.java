@@ -0,0 +1,8 @@
+package ru.supersto.entity;
+
+public enum StockReservationStatus {
+    HELD, // Товар удерживается за заказом до истечения срока
+    CONFIRMED, // Резерв подтвержден вместе с заказом
+    RELEASED, // Резерв снят, товар возвращен на склад
+    EXPIRED // Срок резерва истек, товар возвращен на склад, а заказ оставлен без отмены
+}
@@ -53,6 +53,16 @@ public class User implements UserDetails {
     @Field("loyalty_points")
     private Integer loyaltyPoints;
 
+    private List<ServiceCategory> specializations; // Категории услуг мастера (пусто - выполняет любые)
+
+    /**
+     * Может ли мастер выполнять услуги категории
+     */
+    public boolean canPerform(ServiceCategory category) {
+        return specializations == null || specializations.isEmpty() || category == null
+                || specializations.contains(category);
+    }
+
     public void prePersist() {
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
@@ -0,0 +1,71 @@
+package ru.supersto.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Заявка клиента в листе ожидания к мастеру на конкретный день
+ */
+@Document(collection = "waitlist_entries")
+@CompoundIndex(name = "master_date_status_idx", def = "{'master_id': 1, 'desired_date': 1, 'status': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitlistEntry {
+
+    @Id
+    private String id;
+
+    @Indexed
+    @Field("client_id")
+    private String clientId;
+
+    @Field("master_id")
+    private String masterId;
+
+    @Field("service_id")
+    private String serviceId;
+
+    @Field("desired_date")
+    private LocalDate desiredDate;
+
+    @Field("duration_minutes")
+    private Integer durationMinutes;
+
+    @Field("loyalty_level")
+    private LoyaltyLevel loyaltyLevel; // Уровень клиента на момент постановки в очередь
+
+    private WaitlistStatus status;
+
+    @Field("offered_slot")
+    private LocalDateTime offeredSlot;
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+
+    @Field("notified_at")
+    private LocalDateTime notifiedAt;
+
+    public void prePersist() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (status == null) {
+            status = WaitlistStatus.WAITING;
+        }
+        if (loyaltyLevel == null) {
+            loyaltyLevel = LoyaltyLevel.BRONZE;
+        }
+    }
+}
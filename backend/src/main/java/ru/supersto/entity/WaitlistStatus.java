@@ -0,0 +1,8 @@
+package ru.supersto.entity;
+
+public enum WaitlistStatus {
+    WAITING, // Клиент ждет освобождения времени
+    NOTIFIED, // Клиенту предложено освободившееся время
+    CANCELLED, // Клиент покинул лист ожидания
+    EXPIRED // Желаемый день прошел
+}
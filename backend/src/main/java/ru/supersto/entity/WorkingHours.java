@@ -4,10 +4,19 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.DayOfWeek;
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class WorkingHours {
     private String start; // например "08:00"
     private String end; // например "20:00"
+    private List<DayOfWeek> daysOff; // выходные дни (пусто - работает без выходных)
+
+    public WorkingHours(String start, String end) {
+        this.start = start;
+        this.end = end;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package ru.supersto.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.supersto.service.ResponseCacheService;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Фильтр, отдающий публичные GET-ответы каталога из кэша готовых байтов.
+ * Выполняется после цепочки Spring Security, поэтому роль пользователя уже известна.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final String ANONYMOUS_ROLE = "ANONYMOUS";
+
+    private final ResponseCacheService responseCacheService;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod())
+                || responseCacheService.resolveGroup(getPath(request)) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+
+        String group = responseCacheService.resolveGroup(getPath(request));
+        String key = buildKey(request);
+
+        ResponseCacheService.CachedResponse cached = responseCacheService.get(key);
+        if (cached != null) {
+            writeCached(request, response, cached);
+            return;
+        }
+
+        long generation = responseCacheService.currentGeneration(group);
+        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, responseWrapper);
+
+            String contentType = responseWrapper.getContentType();
+            if (responseWrapper.getStatus() == HttpServletResponse.SC_OK
+                    && contentType != null
+                    && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType))) {
+                responseCacheService.put(key, group, generation, contentType, responseWrapper.getContentAsByteArray());
+            }
+        } finally {
+            responseWrapper.copyBodyToResponse();
+        }
+    }
+
+    private void writeCached(HttpServletRequest request, HttpServletResponse response,
+            ResponseCacheService.CachedResponse cached) throws IOException {
+        byte[] body = cached.body();
+
+        if (cached.gzippedBody() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = cached.gzippedBody();
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.contentType());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.flushBuffer();
+    }
+
+    /**
+     * Ключ кэша: роль + путь + отсортированные параметры запроса
+     */
+    private String buildKey(HttpServletRequest request) {
+        StringBuilder key = new StringBuilder(resolveRole()).append(' ').append(getPath(request));
+
+        Map<String, String[]> params = new TreeMap<>(request.getParameterMap());
+        if (!params.isEmpty()) {
+            key.append('?').append(params.entrySet().stream()
+                    .map(entry -> entry.getKey() + "=" + Arrays.stream(entry.getValue())
+                            .sorted()
+                            .collect(Collectors.joining(",")))
+                    .collect(Collectors.joining("&")));
+        }
+        return key.toString();
+    }
+
+    private String resolveRole() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return ANONYMOUS_ROLE;
+        }
+        return authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    private String getPath(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -11,26 +11,18 @@ import java.util.List;
 @Repository
 public interface ChatMessageRepository extends MongoRepository<ChatMessage, String> {
 
-    @Query("{'$or': [{'sender.id': ?0, 'recipient.id': ?1}, {'sender.id': ?1, 'recipient.id': ?0}]}")
-    List<ChatMessage> findConversation(String userId1, String userId2);
+    List<ChatMessage> findByConversationIdOrderByCreatedAtAsc(String conversationId);
 
-    @Query("{'$or': [{'sender.id': ?0, 'recipient.id': ?1}, {'sender.id': ?1, 'recipient.id': ?0}], 'createdAt': {'$gte': ?2, '$lte': ?3}}")
-    List<ChatMessage> findConversationByDateRange(String userId1, String userId2, LocalDateTime startDate,
+    @Query(value = "{'conversationId': ?0, 'createdAt': {'$gte': ?1, '$lte': ?2}}", sort = "{'createdAt': 1}")
+    List<ChatMessage> findConversationByDateRange(String conversationId, LocalDateTime startDate,
             LocalDateTime endDate);
 
     List<ChatMessage> findBySenderIdOrRecipientIdOrderByCreatedAtDesc(String senderId, String recipientId);
 
     List<ChatMessage> findByRecipientIdAndIsReadFalse(String recipientId);
 
-    @Query("{'recipient.id': ?0, 'isRead': false}")
-    long countUnreadMessages(String userId);
-
     List<ChatMessage> findByAppointmentId(String appointmentId);
 
     @Query("{'createdAt': {'$gte': ?0, '$lte': ?1}}")
     List<ChatMessage> findByDateRange(LocalDateTime startDate, LocalDateTime endDate);
-
-    // Последние сообщения для каждого собеседника
-    @Query(value = "{'$or': [{'sender.id': ?0}, {'recipient.id': ?0}]}", sort = "{'createdAt': -1}")
-    List<ChatMessage> findLastMessagesForUser(String userId);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package ru.supersto.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import ru.supersto.entity.Conversation;
+
+@Repository
+public interface ConversationRepository extends MongoRepository<Conversation, String> {
+}
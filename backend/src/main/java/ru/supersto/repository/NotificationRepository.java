@@ -40,19 +40,19 @@ public interface NotificationRepository extends MongoRepository<Notification, St
     List<Notification> findByReferenceIdAndReferenceType(String referenceId, String referenceType);
 
     // Поиск по датам
-    List<Notification> findByCreatedAtBefore(LocalDateTime date);
-
-    List<Notification> findByExpiresAtBefore(LocalDateTime date);
-
     @Query("{'createdAt': {'$gte': ?0, '$lte': ?1}}")
     List<Notification> findByDateRange(LocalDateTime startDate, LocalDateTime endDate);
 
     @Query("{'expiresAt': {'$lt': ?0}}")
     List<Notification> findExpiredNotifications(LocalDateTime now);
 
-    // Удаление истекших уведомлений
+    // Удаление одним deleteMany без загрузки документов
     @Query(value = "{'expiresAt': {'$lt': ?0}}", delete = true)
     void deleteExpiredNotifications(LocalDateTime now);
 
+    long deleteByCreatedAtBefore(LocalDateTime date);
+
+    long deleteByExpiresAtBefore(LocalDateTime date);
+
     List<Notification> findByRecipientIdAndCreatedAtAfter(String recipientId, LocalDateTime after);
 }
\ No newline at end of file
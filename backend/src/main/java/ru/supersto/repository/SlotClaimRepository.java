@@ -0,0 +1,9 @@
+package ru.supersto.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import ru.supersto.entity.SlotClaim;
+
+@Repository
+public interface SlotClaimRepository extends MongoRepository<SlotClaim, String> {
+}
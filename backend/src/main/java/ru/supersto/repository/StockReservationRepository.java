@@ -0,0 +1,20 @@
+package ru.supersto.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import ru.supersto.entity.StockReservation;
+import ru.supersto.entity.StockReservationStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockReservationRepository extends MongoRepository<StockReservation, String> {
+
+    Optional<StockReservation> findByOrderId(String orderId);
+
+    boolean existsByOrderId(String orderId);
+
+    List<StockReservation> findByStatusAndExpiresAtBefore(StockReservationStatus status, LocalDateTime date);
+}
@@ -0,0 +1,18 @@
+package ru.supersto.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import ru.supersto.entity.WaitlistEntry;
+import ru.supersto.entity.WaitlistStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends MongoRepository<WaitlistEntry, String> {
+
+    List<WaitlistEntry> findByMasterIdAndDesiredDateAndStatus(String masterId, LocalDate desiredDate,
+            WaitlistStatus status);
+
+    List<WaitlistEntry> findByClientIdOrderByCreatedAtDesc(String clientId);
+}
@@ -0,0 +1,89 @@
+package ru.supersto.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.supersto.service.AppointmentBatchService;
+import ru.supersto.service.AppointmentReminderService;
+import ru.supersto.service.MasterAvailabilityService;
+import ru.supersto.service.WaitlistService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Планировщик для обслуживания расписания мастеров
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentScheduler {
+
+    private final MasterAvailabilityService masterAvailabilityService;
+    private final AppointmentBatchService appointmentBatchService;
+    private final WaitlistService waitlistService;
+    private final AppointmentReminderService appointmentReminderService;
+
+    @Value("${app.scheduling.auto-assign-enabled:false}")
+    private boolean autoAssignEnabled;
+
+    @Value("${app.scheduling.auto-assign-days:2}")
+    private int autoAssignDays;
+
+    /**
+     * Автоназначение мастеров на ожидающие записи ближайших дней каждые 15 минут
+     */
+    @Scheduled(fixedRate = 15 * 60 * 1000, initialDelay = 2 * 60 * 1000) // 15 минут в миллисекундах
+    public void autoAssignMasters() {
+        if (!autoAssignEnabled) {
+            return;
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            appointmentBatchService.autoAssignMasters(now, now.plusDays(autoAssignDays));
+        } catch (Exception e) {
+            log.error("Ошибка при автоназначении мастеров: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Тик колеса напоминаний о записях раз в минуту
+     */
+    @Scheduled(fixedRate = 60 * 1000) // 1 минута в миллисекундах
+    public void fireAppointmentReminders() {
+        try {
+            appointmentReminderService.fireDue();
+        } catch (Exception e) {
+            log.error("Ошибка при отправке напоминаний о записях: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Удаление прошедших дней из индекса занятости каждый день в 0:05
+     */
+    @Scheduled(cron = "0 5 0 * * ?")
+    public void evictPastSchedules() {
+        try {
+            int evicted = masterAvailabilityService.evictBefore(LocalDate.now());
+            log.debug("Из индекса занятости удалено {} прошедших дней", evicted);
+        } catch (Exception e) {
+            log.error("Ошибка при очистке индекса занятости: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Закрытие заявок листа ожидания на прошедшие дни каждый день в 0:10
+     */
+    @Scheduled(cron = "0 10 0 * * ?")
+    public void expireWaitlist() {
+        try {
+            long expired = waitlistService.expireBefore(LocalDate.now());
+            log.debug("Закрыто {} заявок листа ожидания на прошедшие дни", expired);
+        } catch (Exception e) {
+            log.error("Ошибка при закрытии заявок листа ожидания: {}", e.getMessage(), e);
+        }
+    }
+}
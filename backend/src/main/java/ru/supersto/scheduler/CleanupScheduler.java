@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.supersto.service.NotificationService;
+import ru.supersto.service.NotificationStreamService;
+import ru.supersto.service.UnreadCounterService;
 
 /**
  * Планировщик для очистки старых данных
@@ -15,6 +17,8 @@ import ru.supersto.service.NotificationService;
 public class CleanupScheduler {
 
     private final NotificationService notificationService;
+    private final UnreadCounterService unreadCounterService;
+    private final NotificationStreamService notificationStreamService;
 
     /**
      * Очистка старых уведомлений каждый день в 2:00
@@ -32,7 +36,7 @@ public class CleanupScheduler {
     }
 
     /**
-     * Очистка истекших уведомлений каждые 6 часов
+     * Дочистка истекших уведомлений каждые 6 часов (основное удаление - TTL-индекс expires_at)
      */
     @Scheduled(fixedRate = 6 * 60 * 60 * 1000) // 6 часов в миллисекундах
     public void cleanupExpiredNotifications() {
@@ -46,6 +50,30 @@ public class CleanupScheduler {
         }
     }
 
+    /**
+     * Сверка счетчиков непрочитанных с базой каждые 5 минут
+     */
+    @Scheduled(fixedRate = 5 * 60 * 1000, initialDelay = 5 * 60 * 1000) // 5 минут в миллисекундах
+    public void reconcileUnreadCounters() {
+        try {
+            unreadCounterService.reconcile();
+        } catch (Exception e) {
+            log.error("Ошибка при сверке счетчиков непрочитанных: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Пульс потоков уведомлений: держит SSE-соединения открытыми и убирает отключившихся клиентов
+     */
+    @Scheduled(fixedRateString = "${app.notification.stream.heartbeat-ms:15000}")
+    public void notificationStreamHeartbeat() {
+        try {
+            notificationStreamService.heartbeat();
+        } catch (Exception e) {
+            log.error("Ошибка при отправке пульса потоков уведомлений: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Проверка состояния системы каждый час
      */
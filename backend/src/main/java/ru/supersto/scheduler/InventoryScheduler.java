@@ -0,0 +1,46 @@
+package ru.supersto.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.supersto.service.OrderService;
+import ru.supersto.service.StockAvailabilityService;
+
+/**
+ * Планировщик для обслуживания складских резервов
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryScheduler {
+
+    private final OrderService orderService;
+    private final StockAvailabilityService stockAvailabilityService;
+
+    /**
+     * Разбор просроченных резервов каждую минуту
+     */
+    @Scheduled(fixedRate = 60 * 1000) // 1 минута в миллисекундах
+    public void settleExpiredHolds() {
+        try {
+            orderService.settleExpiredHolds();
+        } catch (Exception e) {
+            log.error("Ошибка при разборе просроченных резервов: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Сверка счетчиков остатков с базой каждые 5 минут
+     */
+    @Scheduled(fixedRate = 5 * 60 * 1000, initialDelay = 60 * 1000) // 5 минут в миллисекундах
+    public void reconcileStockCounters() {
+        log.debug("Запуск сверки счетчиков остатков");
+
+        try {
+            stockAvailabilityService.reconcile();
+        } catch (Exception e) {
+            log.error("Ошибка при сверке счетчиков остатков: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.supersto.security;
+
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+import ru.supersto.util.Constants;
+
+/**
+ * Аутентификация STOMP-соединения по JWT из заголовка Authorization кадра CONNECT.
+ * Браузер не может передать заголовок при WebSocket-рукопожатии, поэтому токен проверяется при CONNECT;
+ * соединение без действительного токена отклоняется. Подписка разрешена только на собственные очереди
+ * /user/queue/**, отправка напрямую в очереди брокера запрещена: в них пишет только сервер.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JwtChannelInterceptor implements ChannelInterceptor {
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final UserDetailsService userDetailsService;
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT -> authenticate(accessor);
+            case SUBSCRIBE -> authorizeSubscribe(accessor);
+            case SEND -> authorizeSend(accessor);
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private void authorizeSubscribe(StompHeaderAccessor accessor) {
+        requireUser(accessor);
+        String destination = accessor.getDestination();
+        if (destination == null
+                || !destination.startsWith(Constants.WebSocket.USER_PREFIX + Constants.WebSocket.BROKER_PREFIX + "/")) {
+            log.warn("Отклонена подписка {} на {}", accessor.getUser().getName(), destination);
+            throw new AccessDeniedException("Подписка разрешена только на собственные очереди");
+        }
+    }
+
+    private void authorizeSend(StompHeaderAccessor accessor) {
+        requireUser(accessor);
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(Constants.WebSocket.APP_PREFIX + "/")) {
+            log.warn("Отклонена отправка {} в {}", accessor.getUser().getName(), destination);
+            throw new AccessDeniedException("Отправка в очереди брокера запрещена");
+        }
+    }
+
+    private void requireUser(StompHeaderAccessor accessor) {
+        if (accessor.getUser() == null) {
+            throw new AccessDeniedException("Соединение не аутентифицировано");
+        }
+    }
+
+    private void authenticate(StompHeaderAccessor accessor) {
+        String authHeader = accessor.getFirstNativeHeader(Constants.Security.JWT_HEADER);
+        if (authHeader == null || !authHeader.startsWith(Constants.Security.JWT_PREFIX)) {
+            throw new BadCredentialsException("Отсутствует токен авторизации");
+        }
+
+        String jwt = authHeader.substring(Constants.Security.JWT_PREFIX.length());
+        try {
+            UserDetails userDetails = userDetailsService.loadUserByUsername(jwtTokenProvider.extractUsername(jwt));
+            if (!jwtTokenProvider.isTokenValid(jwt, userDetails)) {
+                throw new BadCredentialsException("Недействительный токен авторизации");
+            }
+            accessor.setUser(new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities()));
+        } catch (JwtException e) {
+            log.warn("Отклонено WebSocket-подключение: {}", e.getMessage());
+            throw new BadCredentialsException("Недействительный токен авторизации");
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package ru.supersto.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import ru.supersto.dto.AutoAssignmentResultDTO;
+import ru.supersto.dto.BulkAppointmentRequest;
+import ru.supersto.dto.BulkAppointmentResultDTO;
+import ru.supersto.entity.Appointment;
+import ru.supersto.entity.AppointmentStatus;
+import ru.supersto.entity.User;
+import ru.supersto.entity.UserRole;
+import ru.supersto.exception.BusinessException;
+import ru.supersto.util.Constants;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетные операции с записями
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentBatchService {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserService userService;
+    private final ServiceService serviceService;
+    private final MasterAvailabilityService masterAvailabilityService;
+    private final SlotClaimService slotClaimService;
+    private final WorkingHoursService workingHoursService;
+    private final AppointmentReminderService appointmentReminderService;
+
+    /**
+     * Создать серию записей. Клиент, услуги и мастера загружаются один раз, занятость мастеров -
+     * одним запросом на весь период, записи сохраняются одной вставкой. Ошибка одной записи
+     * не прерывает обработку остальных.
+     */
+    public List<BulkAppointmentResultDTO> createAppointments(BulkAppointmentRequest request) {
+        List<BulkAppointmentRequest.Booking> bookings = expandBookings(request);
+        if (bookings.isEmpty()) {
+            throw new BusinessException("Укажите список записей или правило повторения");
+        }
+        if (bookings.size() > Constants.Limits.MAX_BULK_APPOINTMENTS) {
+            throw new BusinessException("Не более " + Constants.Limits.MAX_BULK_APPOINTMENTS
+                    + " записей за один запрос");
+        }
+
+        User client = userService.getUserById(request.getClientId());
+        Map<String, ru.supersto.entity.Service> services = serviceService.findAllByIds(bookings.stream()
+                .map(booking -> valueOrDefault(booking.getServiceId(), request.getServiceId()))
+                .collect(Collectors.toSet()));
+        Set<String> masterIds = bookings.stream()
+                .map(booking -> valueOrDefault(booking.getMasterId(), request.getMasterId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, User> masters = masterIds.isEmpty() ? Map.of() : userService.findAllByIds(masterIds);
+
+        if (!masters.isEmpty()) {
+            LocalDate from = bookings.stream().map(booking -> booking.getAppointmentDate().toLocalDate())
+                    .min(LocalDate::compareTo).orElseThrow();
+            LocalDate to = bookings.stream().map(booking -> booking.getAppointmentDate().toLocalDate())
+                    .max(LocalDate::compareTo).orElseThrow();
+            masterAvailabilityService.preload(masters.keySet(), from, to.plusDays(1));
+        }
+
+        List<BulkAppointmentResultDTO> results = new ArrayList<>();
+        List<Appointment> accepted = new ArrayList<>();
+        List<BulkAppointmentResultDTO> acceptedResults = new ArrayList<>();
+        List<SlotClaimService.ClaimRequest> claims = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < bookings.size(); i++) {
+            BulkAppointmentRequest.Booking booking = bookings.get(i);
+            String serviceId = valueOrDefault(booking.getServiceId(), request.getServiceId());
+            String masterId = valueOrDefault(booking.getMasterId(), request.getMasterId());
+            ru.supersto.entity.Service service = services.get(serviceId);
+            User master = masterId != null ? masters.get(masterId) : null;
+
+            BulkAppointmentResultDTO result = BulkAppointmentResultDTO.builder()
+                    .index(i)
+                    .appointmentDate(booking.getAppointmentDate())
+                    .masterId(masterId)
+                    .build();
+            results.add(result);
+
+            String error = validateBooking(booking, service, serviceId, master, masterId, now);
+            if (error != null) {
+                result.setError(error);
+                continue;
+            }
+
+            Appointment appointment = Appointment.builder()
+                    .id(new ObjectId().toHexString())
+                    .client(client)
+                    .master(master)
+                    .service(service)
+                    .appointmentDate(booking.getAppointmentDate())
+                    .description(valueOrDefault(booking.getDescription(), request.getDescription()))
+                    .totalPrice(service.getPrice())
+                    .status(AppointmentStatus.PENDING)
+                    .build();
+            appointment.prePersist();
+
+            if (master != null) {
+                claims.add(new SlotClaimService.ClaimRequest(masterId, appointment.getAppointmentDate(),
+                        MasterAvailabilityService.durationOf(service), appointment.getId()));
+                // Следующие записи пакета увидят это время занятым
+                masterAvailabilityService.addBooking(appointment);
+            }
+            accepted.add(appointment);
+            acceptedResults.add(result);
+        }
+
+        // Слоты всех записей захватываются одной вставкой; отклоненные записи исключаются из пакета
+        Set<String> rejected = Set.of();
+        String rejectionError = "Мастер уже занят в указанное время";
+        try {
+            rejected = claims.isEmpty() ? Set.of() : slotClaimService.claimAll(claims);
+        } catch (RuntimeException e) {
+            log.error("Ошибка при захвате времени пакета записей: {}", e.getMessage(), e);
+            rejected = claims.stream().map(SlotClaimService.ClaimRequest::appointmentId).collect(Collectors.toSet());
+            rejectionError = "Не удалось захватить время записи";
+        }
+        for (int i = accepted.size() - 1; i >= 0; i--) {
+            if (rejected.contains(accepted.get(i).getId())) {
+                masterAvailabilityService.removeBooking(accepted.get(i));
+                acceptedResults.get(i).setError(rejectionError);
+                accepted.remove(i);
+                acceptedResults.remove(i);
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            insertAccepted(accepted, acceptedResults);
+        }
+
+        long created = results.stream().filter(BulkAppointmentResultDTO::isSuccess).count();
+        log.info("Пакетное создание записей для клиента {}: создано {} из {}",
+                client.getEmail(), created, results.size());
+        return results;
+    }
+
+    /**
+     * Назначить мастеров всем ожидающим записям окна. Занятость мастеров загружается один раз и
+     * ведется в памяти на протяжении всего пакета; кандидаты выбираются из кучи по текущей загрузке
+     * с учетом специализации, результат сохраняется одной пакетной записью.
+     */
+    public AutoAssignmentResultDTO autoAssignMasters(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime windowStart = from.isAfter(LocalDateTime.now()) ? from : LocalDateTime.now();
+        Query pendingQuery = Query.query(Criteria.where("status").is(AppointmentStatus.PENDING)
+                .and("master").is(null)
+                .and("appointmentDate").gt(windowStart).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, "appointmentDate"));
+        pendingQuery.fields().include("service", "status", "appointmentDate");
+        List<Appointment> pending = mongoTemplate.find(pendingQuery, Appointment.class);
+
+        List<User> masters = userService.findByRole(UserRole.MASTER);
+        if (pending.isEmpty() || masters.isEmpty()) {
+            return AutoAssignmentResultDTO.builder()
+                    .processed(pending.size())
+                    .unassignedAppointmentIds(pending.stream().map(Appointment::getId).collect(Collectors.toList()))
+                    .build();
+        }
+
+        Map<String, ru.supersto.entity.Service> services = serviceService.findAllByIds(pending.stream()
+                .map(Appointment::resolveServiceId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        LocalDate firstDay = windowStart.toLocalDate();
+        LocalDate lastDay = to.toLocalDate().plusDays(1);
+        List<String> masterIds = masters.stream().map(User::getId).collect(Collectors.toList());
+        masterAvailabilityService.preload(masterIds, firstDay, lastDay);
+
+        PriorityQueue<MasterLoad> heap = new PriorityQueue<>(Comparator.comparingInt(MasterLoad::getLoad)
+                .thenComparing(load -> load.getMaster().getId()));
+        masters.forEach(master -> heap.add(new MasterLoad(master,
+                masterAvailabilityService.bookedMinutes(master.getId(), firstDay, lastDay))));
+
+        List<Appointment> assignments = new ArrayList<>();
+        List<String> unassigned = new ArrayList<>();
+        for (Appointment appointment : pending) {
+            ru.supersto.entity.Service service = services.get(appointment.resolveServiceId());
+            User master = pickMaster(heap, appointment, service);
+            if (master == null) {
+                unassigned.add(appointment.getId());
+                continue;
+            }
+            // Услуга из пакетной выборки, чтобы не подгружать ленивую ссылку
+            appointment.setService(service);
+            appointment.setMaster(master);
+            masterAvailabilityService.addBooking(appointment);
+            assignments.add(appointment);
+        }
+
+        int assigned = persistAssignments(assignments);
+        unassigned.addAll(assignments.stream()
+                .filter(appointment -> appointment.getMaster() == null)
+                .map(Appointment::getId)
+                .collect(Collectors.toList()));
+
+        log.info("Автоназначение мастеров: обработано {}, назначено {}", pending.size(), assigned);
+        return AutoAssignmentResultDTO.builder()
+                .processed(pending.size())
+                .assigned(assigned)
+                .unassignedAppointmentIds(unassigned)
+                .build();
+    }
+
+    /**
+     * Наименее загруженный мастер нужной специализации, свободный на время услуги.
+     * Просмотренные, но не подошедшие мастера возвращаются в кучу.
+     */
+    private User pickMaster(PriorityQueue<MasterLoad> heap, Appointment appointment,
+            ru.supersto.entity.Service service) {
+        int duration = MasterAvailabilityService.durationOf(service);
+        List<MasterLoad> skipped = new ArrayList<>();
+        User picked = null;
+
+        while (picked == null && !heap.isEmpty()) {
+            MasterLoad candidate = heap.poll();
+            skipped.add(candidate);
+            User master = candidate.getMaster();
+            if (!master.canPerform(service != null ? service.getCategory() : null)
+                    || masterAvailabilityService.findConflict(master.getId(),
+                            appointment.getAppointmentDate(), duration, null) != null) {
+                continue;
+            }
+            try {
+                slotClaimService.claim(master.getId(), appointment.getAppointmentDate(), duration,
+                        appointment.getId());
+            } catch (BusinessException e) {
+                continue;
+            }
+            candidate.setLoad(candidate.getLoad() + duration);
+            picked = master;
+        }
+
+        heap.addAll(skipped);
+        return picked;
+    }
+
+    /**
+     * Сохранить назначения одной пакетной записью. Запись, успевшая измениться с момента выборки,
+     * не обновляется, и ее захват времени снимается.
+     */
+    private int persistAssignments(List<Appointment> assignments) {
+        if (assignments.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class);
+        assignments.forEach(appointment -> bulkOps.updateOne(
+                Query.query(Criteria.where("id").is(appointment.getId())
+                        .and("status").is(AppointmentStatus.PENDING)
+                        .and("master").is(null)),
+                new Update().set("master", appointment.getMaster()).set("status", AppointmentStatus.CONFIRMED)));
+        BulkWriteResult result;
+        try {
+            result = bulkOps.execute();
+        } catch (RuntimeException e) {
+            // Часть назначений могла записаться: снимаем захваты только у записей, оставшихся без мастера
+            log.error("Ошибка при сохранении назначений мастеров: {}", e.getMessage(), e);
+            releaseUnassigned(assignments);
+            return (int) assignments.stream().filter(appointment -> appointment.getMaster() != null).count();
+        }
+
+        if (result.getModifiedCount() < assignments.size()) {
+            releaseUnassigned(assignments);
+        }
+        return (int) assignments.stream().filter(appointment -> appointment.getMaster() != null).count();
+    }
+
+    /**
+     * Сверить назначения с базой: у записей, которые не получили выбранного мастера, снять захват
+     * времени и бронь в памяти. Если сверка невозможна, снимаются все захваты пакета.
+     */
+    private void releaseUnassigned(List<Appointment> assignments) {
+        Map<String, Appointment> stored;
+        try {
+            Query assignedQuery = Query.query(Criteria.where("id").in(assignments.stream()
+                    .map(Appointment::getId).collect(Collectors.toList())));
+            assignedQuery.fields().include("master", "status");
+            stored = mongoTemplate.find(assignedQuery, Appointment.class).stream()
+                    .collect(Collectors.toMap(Appointment::getId, Function.identity()));
+        } catch (RuntimeException e) {
+            log.error("Не удалось сверить назначения мастеров: {}", e.getMessage(), e);
+            stored = Map.of();
+        }
+
+        for (Appointment appointment : assignments) {
+            String masterId = appointment.resolveMasterId();
+            Appointment current = stored.get(appointment.getId());
+            if (current == null || !masterId.equals(current.resolveMasterId())) {
+                masterAvailabilityService.removeBooking(appointment);
+                slotClaimService.release(masterId, appointment.getId());
+                appointment.setMaster(null);
+            }
+        }
+    }
+
+    /**
+     * Сохранить записи одной неупорядоченной вставкой. Отменяются только записи, которые не удалось
+     * сохранить; если результат вставки неизвестен, успевшие записаться документы удаляются.
+     */
+    private void insertAccepted(List<Appointment> accepted, List<BulkAppointmentResultDTO> results) {
+        Set<Integer> failed = new HashSet<>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Appointment.class)
+                    .insert(accepted)
+                    .execute();
+        } catch (BulkOperationException e) {
+            log.error("Не сохранено {} записей из {}", e.getErrors().size(), accepted.size());
+            e.getErrors().forEach(error -> failed.add(error.getIndex()));
+        } catch (RuntimeException e) {
+            log.error("Ошибка при сохранении пакета записей: {}", e.getMessage(), e);
+            mongoTemplate.remove(Query.query(Criteria.where("id").in(accepted.stream()
+                    .map(Appointment::getId).collect(Collectors.toList()))), Appointment.class);
+            for (int i = 0; i < accepted.size(); i++) {
+                failed.add(i);
+            }
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            Appointment appointment = accepted.get(i);
+            if (failed.contains(i)) {
+                masterAvailabilityService.removeBooking(appointment);
+                slotClaimService.release(appointment.getId());
+                results.get(i).setError("Не удалось сохранить запись");
+                continue;
+            }
+            appointmentReminderService.schedule(appointment);
+            results.get(i).setSuccess(true);
+            results.get(i).setAppointmentId(appointment.getId());
+        }
+    }
+
+    private String validateBooking(BulkAppointmentRequest.Booking booking, ru.supersto.entity.Service service,
+            String serviceId, User master, String masterId, LocalDateTime now) {
+        if (booking.getAppointmentDate() == null || !booking.getAppointmentDate().isAfter(now)) {
+            return "Дата записи должна быть в будущем";
+        }
+        if (service == null) {
+            return "Услуга не найдена с ID: " + serviceId;
+        }
+        if (!workingHoursService.isWorkingTime(booking.getAppointmentDate(),
+                MasterAvailabilityService.durationOf(service))) {
+            return "Время записи выходит за рабочие часы СТО";
+        }
+        if (masterId == null) {
+            return null;
+        }
+        if (master == null) {
+            return "Мастер не найден с ID: " + masterId;
+        }
+
+        MasterAvailabilityService.BookedInterval conflict = masterAvailabilityService.findConflict(
+                masterId, booking.getAppointmentDate(), MasterAvailabilityService.durationOf(service), null);
+        return conflict != null ? conflict.toConflictMessage() : null;
+    }
+
+    /**
+     * Мастер и его загрузка в минутах за окно назначения
+     */
+    @Data
+    @AllArgsConstructor
+    private static class MasterLoad {
+        private User master;
+        private int load;
+    }
+
+    private static String valueOrDefault(String value, String defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Развернуть правило повторения в список записей
+     */
+    private List<BulkAppointmentRequest.Booking> expandBookings(BulkAppointmentRequest request) {
+        List<BulkAppointmentRequest.Booking> bookings = new ArrayList<>();
+        if (request.getBookings() != null) {
+            bookings.addAll(request.getBookings());
+        }
+
+        BulkAppointmentRequest.Recurrence recurrence = request.getRecurrence();
+        if (recurrence != null) {
+            for (int occurrence = 0; occurrence < recurrence.getOccurrences(); occurrence++) {
+                LocalDateTime date = recurrence.getStart().plusDays((long) occurrence * recurrence.getIntervalDays());
+                for (int copy = 0; copy < recurrence.getPerOccurrence(); copy++) {
+                    BulkAppointmentRequest.Booking booking = new BulkAppointmentRequest.Booking();
+                    booking.setAppointmentDate(date);
+                    bookings.add(booking);
+                }
+            }
+        }
+        return bookings;
+    }
+}
@@ -0,0 +1,180 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.Appointment;
+import ru.supersto.entity.AppointmentStatus;
+import ru.supersto.entity.ReminderType;
+import ru.supersto.entity.User;
+import ru.supersto.util.Constants;
+import ru.supersto.util.HashedTimingWheel;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Напоминания о записях за сутки и за 2 часа.
+ * Напоминания хранятся в хешированном колесе таймеров: при старте загружаются предстоящие записи,
+ * дальше колесо обновляется при создании, изменении и отмене записи. Тик просматривает одну ячейку колеса,
+ * наступившие напоминания отправляются пачкой.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AppointmentReminderService {
+
+    private static final Set<AppointmentStatus> ACTIVE_STATUSES = Set.of(
+            AppointmentStatus.PENDING, AppointmentStatus.CONFIRMED);
+
+    private final MongoTemplate mongoTemplate;
+    private final UserService userService;
+    private final ServiceService serviceService;
+    private final NotificationService notificationService;
+
+    @Value("${app.reminders.enabled:true}")
+    private boolean enabled;
+
+    private final HashedTimingWheel<Reminder> wheel = new HashedTimingWheel<>(
+            Constants.Scheduling.REMINDER_TICK_MILLIS, Constants.Scheduling.REMINDER_WHEEL_SIZE,
+            System.currentTimeMillis());
+    private final ConcurrentMap<String, List<HashedTimingWheel.Timeout<Reminder>>> byAppointment =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Загрузить напоминания предстоящих записей
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadUpcoming() {
+        if (!enabled) {
+            return;
+        }
+
+        Query query = Query.query(Criteria.where("appointmentDate").gt(LocalDateTime.now())
+                .and("status").in(ACTIVE_STATUSES));
+        query.fields().include("client", "service", "appointmentDate", "status", "remindersSent");
+        List<Appointment> upcoming = mongoTemplate.find(query, Appointment.class);
+
+        upcoming.forEach(this::schedule);
+        log.info("Загружены напоминания {} предстоящих записей, в колесе {}", upcoming.size(), wheel.size());
+    }
+
+    /**
+     * Запланировать напоминания записи заново. Для неактивной записи напоминания снимаются.
+     */
+    public void schedule(Appointment appointment) {
+        if (!enabled) {
+            return;
+        }
+
+        cancel(appointment.getId());
+        if (!ACTIVE_STATUSES.contains(appointment.getStatus()) || appointment.getAppointmentDate() == null) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<HashedTimingWheel.Timeout<Reminder>> timeouts = new ArrayList<>();
+        for (ReminderType type : ReminderType.values()) {
+            LocalDateTime fireAt = appointment.getAppointmentDate().minusMinutes(type.getLeadMinutes());
+            boolean sent = appointment.getRemindersSent() != null && appointment.getRemindersSent().contains(type);
+            // Напоминание, срок которого уже прошел, не отправляется: запись ближе, чем оно обещает
+            if (sent || !fireAt.isAfter(now)) {
+                continue;
+            }
+            Reminder reminder = new Reminder(appointment.getId(), appointment.resolveClientId(),
+                    appointment.resolveServiceId(), appointment.getAppointmentDate(), type);
+            timeouts.add(wheel.schedule(reminder, toEpochMillis(fireAt)));
+        }
+        if (!timeouts.isEmpty()) {
+            byAppointment.put(appointment.getId(), timeouts);
+        }
+    }
+
+    /**
+     * Снять напоминания записи
+     */
+    public void cancel(String appointmentId) {
+        List<HashedTimingWheel.Timeout<Reminder>> timeouts = byAppointment.remove(appointmentId);
+        if (timeouts != null) {
+            timeouts.forEach(HashedTimingWheel.Timeout::cancel);
+        }
+    }
+
+    /**
+     * Продвинуть колесо и отправить наступившие напоминания
+     */
+    public int fireDue() {
+        List<Reminder> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        // Напоминание забирает тот узел, который первым отметил его в записи; отмененные записи пропускаются
+        List<Reminder> claimed = due.stream()
+                .filter(this::markSent)
+                .collect(Collectors.toList());
+        due.forEach(reminder -> byAppointment.computeIfPresent(reminder.appointmentId(), (id, timeouts) -> {
+            timeouts.removeIf(timeout -> timeout.getTask() == reminder);
+            return timeouts.isEmpty() ? null : timeouts;
+        }));
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, User> clients = userService.findAllByIds(claimed.stream()
+                .map(Reminder::clientId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        Map<String, ru.supersto.entity.Service> services = serviceService.findAllByIds(claimed.stream()
+                .map(Reminder::serviceId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+
+        int sent = 0;
+        for (Reminder reminder : claimed) {
+            User client = clients.get(reminder.clientId());
+            if (client == null) {
+                continue;
+            }
+            ru.supersto.entity.Service service = services.get(reminder.serviceId());
+            notificationService.createAppointmentReminderNotification(client, reminder.appointmentId(),
+                    service != null ? service.getName() : "", reminder.appointmentDate(), reminder.type());
+            sent++;
+        }
+        log.info("Отправлено {} напоминаний о записях", sent);
+        return sent;
+    }
+
+    private boolean markSent(Reminder reminder) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(reminder.appointmentId())
+                        .and("status").in(ACTIVE_STATUSES)
+                        .and("appointmentDate").is(reminder.appointmentDate())
+                        .and("remindersSent").ne(reminder.type())),
+                new Update().addToSet("remindersSent", reminder.type()),
+                Appointment.class).getModifiedCount() > 0;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private record Reminder(String appointmentId, String clientId, String serviceId,
+            LocalDateTime appointmentDate, ReminderType type) {
+    }
+}
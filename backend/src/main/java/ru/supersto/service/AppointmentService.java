@@ -2,17 +2,24 @@ package ru.supersto.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.supersto.dto.AppointmentDTO;
+import ru.supersto.dto.CombinedAppointmentRequest;
 import ru.supersto.entity.Appointment;
 import ru.supersto.entity.AppointmentStatus;
 import ru.supersto.entity.User;
+import ru.supersto.entity.UserRole;
 import ru.supersto.exception.ResourceNotFoundException;
 import ru.supersto.exception.BusinessException;
 import ru.supersto.repository.AppointmentRepository;
+import ru.supersto.util.Constants;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,6 +30,14 @@ public class AppointmentService {
     private final AppointmentRepository appointmentRepository;
     private final UserService userService;
     private final ServiceService serviceService;
+    private final MasterAvailabilityService masterAvailabilityService;
+    private final SlotClaimService slotClaimService;
+    private final WorkingHoursService workingHoursService;
+    private final WaitlistService waitlistService;
+    private final AppointmentReminderService appointmentReminderService;
+
+    @Value("${app.scheduling.slot-step-minutes:60}")
+    private int slotStepMinutes;
 
     public List<AppointmentDTO> getAllAppointments() {
         return appointmentRepository.findAll().stream()
@@ -81,16 +96,22 @@ public class AppointmentService {
         // Проверяем, что услуга существует
         ru.supersto.entity.Service service = serviceService.findById(appointmentDTO.getServiceId());
 
-        // Проверяем доступность мастера в указанное время (если мастер указан)
+        if (!workingHoursService.isWorkingTime(appointmentDTO.getAppointmentDate(),
+                MasterAvailabilityService.durationOf(service))) {
+            throw new BusinessException("Время записи выходит за рабочие часы СТО");
+        }
+
+        // Проверяем доступность мастера на всю длительность услуги (если мастер указан)
+        User master = null;
         if (appointmentDTO.getMasterId() != null) {
-            User master = userService.getUserById(appointmentDTO.getMasterId());
-            validateMasterAvailability(appointmentDTO.getMasterId(), appointmentDTO.getAppointmentDate());
+            master = userService.getUserById(appointmentDTO.getMasterId());
+            validateMasterAvailability(appointmentDTO.getMasterId(), appointmentDTO.getAppointmentDate(),
+                    MasterAvailabilityService.durationOf(service), null);
         }
 
         Appointment appointment = Appointment.builder()
                 .client(client)
-                .master(appointmentDTO.getMasterId() != null ? userService.getUserById(appointmentDTO.getMasterId())
-                        : null)
+                .master(master)
                 .service(service)
                 .appointmentDate(appointmentDTO.getAppointmentDate())
                 .description(appointmentDTO.getDescription())
@@ -100,17 +121,117 @@ public class AppointmentService {
                 .build();
 
         appointment.prePersist();
-        Appointment savedAppointment = appointmentRepository.save(appointment);
+        // ID назначается заранее, чтобы захваченные слоты ссылались на запись
+        appointment.setId(new ObjectId().toHexString());
+        if (master != null) {
+            slotClaimService.claim(master.getId(), appointment.getAppointmentDate(),
+                    MasterAvailabilityService.durationOf(service), appointment.getId());
+        }
+
+        Appointment savedAppointment;
+        try {
+            savedAppointment = appointmentRepository.save(appointment);
+        } catch (RuntimeException e) {
+            slotClaimService.release(appointment.getId());
+            throw e;
+        }
+        masterAvailabilityService.addBooking(savedAppointment);
+        appointmentReminderService.schedule(savedAppointment);
         log.info("Создана новая запись: {} для клиента {}", savedAppointment.getId(), client.getEmail());
 
         return mapToAppointmentDTO(savedAppointment);
     }
 
+    /**
+     * Записать клиента на несколько услуг подряд к одному мастеру.
+     * Услуги выполняются в порядке запроса без пауз; для каждой создается отдельная запись.
+     */
+    public List<AppointmentDTO> createCombinedAppointment(CombinedAppointmentRequest request) {
+        User client = userService.getUserById(request.getClientId());
+        User master = userService.getUserById(request.getMasterId());
+        if (master.getRole() != UserRole.MASTER) {
+            throw new BusinessException("Пользователь не является мастером");
+        }
+
+        Map<String, ru.supersto.entity.Service> services = serviceService.findAllByIds(request.getServiceIds());
+        List<ru.supersto.entity.Service> ordered = new ArrayList<>();
+        for (String serviceId : request.getServiceIds()) {
+            ru.supersto.entity.Service service = services.get(serviceId);
+            if (service == null) {
+                throw new ResourceNotFoundException("Услуга не найдена с ID: " + serviceId);
+            }
+            if (!master.canPerform(service.getCategory())) {
+                throw new BusinessException("Мастер не выполняет услугу: " + service.getName());
+            }
+            ordered.add(service);
+        }
+
+        int totalDuration = ordered.stream().mapToInt(MasterAvailabilityService::durationOf).sum();
+        if (!workingHoursService.isWorkingTime(request.getStart(), totalDuration)) {
+            throw new BusinessException("Время записи выходит за рабочие часы СТО");
+        }
+        validateMasterAvailability(master.getId(), request.getStart(), totalDuration, null);
+
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDateTime start = request.getStart();
+        try {
+            for (ru.supersto.entity.Service service : ordered) {
+                Appointment appointment = Appointment.builder()
+                        .client(client)
+                        .master(master)
+                        .service(service)
+                        .appointmentDate(start)
+                        .description(request.getDescription())
+                        .totalPrice(service.getPrice())
+                        .status(AppointmentStatus.PENDING)
+                        .build();
+                appointment.prePersist();
+                appointment.setId(new ObjectId().toHexString());
+                appointments.add(appointment);
+
+                slotClaimService.claim(master.getId(), start, MasterAvailabilityService.durationOf(service),
+                        appointment.getId());
+                start = start.plusMinutes(MasterAvailabilityService.durationOf(service));
+            }
+        } catch (RuntimeException e) {
+            appointments.forEach(appointment -> slotClaimService.release(appointment.getId()));
+            throw e;
+        }
+
+        List<Appointment> saved;
+        try {
+            saved = appointmentRepository.insert(appointments);
+        } catch (RuntimeException e) {
+            appointments.forEach(appointment -> slotClaimService.release(appointment.getId()));
+            throw e;
+        }
+        saved.forEach(appointment -> {
+            masterAvailabilityService.addBooking(appointment);
+            appointmentReminderService.schedule(appointment);
+        });
+        log.info("Создана комплексная запись из {} услуг для клиента {} к мастеру {} на {}",
+                saved.size(), client.getEmail(), master.getEmail(), request.getStart());
+
+        return saved.stream()
+                .map(this::mapToAppointmentDTO)
+                .collect(Collectors.toList());
+    }
+
     public AppointmentDTO updateAppointmentStatus(String id, AppointmentStatus newStatus) {
         Appointment appointment = appointmentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Запись не найдена с ID: " + id));
 
         AppointmentStatus oldStatus = appointment.getStatus();
+
+        // Восстановленная после отмены запись заново занимает время мастера
+        String masterId = appointment.resolveMasterId();
+        boolean restored = oldStatus == AppointmentStatus.CANCELLED && newStatus != AppointmentStatus.CANCELLED
+                && masterId != null;
+        if (restored) {
+            int duration = MasterAvailabilityService.durationOf(appointment.getService());
+            validateMasterAvailability(masterId, appointment.getAppointmentDate(), duration, id);
+            slotClaimService.claim(masterId, appointment.getAppointmentDate(), duration, id);
+        }
         appointment.setStatus(newStatus);
 
         // Устанавливаем время завершения если запись завершена
@@ -118,7 +239,23 @@ public class AppointmentService {
             appointment.setCompletedAt(LocalDateTime.now());
         }
 
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
+        Appointment updatedAppointment;
+        try {
+            updatedAppointment = appointmentRepository.save(appointment);
+        } catch (RuntimeException e) {
+            if (restored) {
+                slotClaimService.release(id);
+            }
+            throw e;
+        }
+        if (newStatus == AppointmentStatus.CANCELLED && oldStatus != AppointmentStatus.CANCELLED) {
+            masterAvailabilityService.removeBooking(updatedAppointment);
+            slotClaimService.release(id);
+            waitlistService.onSlotFreed(masterId, updatedAppointment.getAppointmentDate());
+        } else if (oldStatus == AppointmentStatus.CANCELLED) {
+            masterAvailabilityService.addBooking(updatedAppointment);
+        }
+        appointmentReminderService.schedule(updatedAppointment);
         log.info("Статус записи {} изменен с {} на {}", id, oldStatus, newStatus);
 
         return mapToAppointmentDTO(updatedAppointment);
@@ -130,13 +267,39 @@ public class AppointmentService {
 
         User master = userService.getUserById(masterId);
 
-        // Проверяем доступность мастера
-        validateMasterAvailability(masterId, appointment.getAppointmentDate());
+        // Проверяем доступность мастера на всю длительность услуги
+        int duration = MasterAvailabilityService.durationOf(appointment.getService());
+        validateMasterAvailability(masterId, appointment.getAppointmentDate(), duration, appointmentId);
+
+        // Слоты уже принадлежат записи, если мастер не меняется и запись не была отменена
+        String previousMasterId = appointment.resolveMasterId();
+        boolean claimRequired = !masterId.equals(previousMasterId)
+                || appointment.getStatus() == AppointmentStatus.CANCELLED;
+        if (claimRequired) {
+            slotClaimService.claim(masterId, appointment.getAppointmentDate(), duration, appointmentId);
+        }
 
         appointment.setMaster(master);
         appointment.setStatus(AppointmentStatus.CONFIRMED);
 
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
+        Appointment updatedAppointment;
+        try {
+            updatedAppointment = appointmentRepository.save(appointment);
+        } catch (RuntimeException e) {
+            if (claimRequired) {
+                slotClaimService.release(masterId, appointmentId);
+            }
+            throw e;
+        }
+        if (previousMasterId != null && !previousMasterId.equals(masterId)) {
+            slotClaimService.release(previousMasterId, appointmentId);
+        }
+        masterAvailabilityService.removeBooking(previousMasterId, appointment.getAppointmentDate(), appointmentId);
+        masterAvailabilityService.addBooking(updatedAppointment);
+        if (previousMasterId != null && !previousMasterId.equals(masterId)) {
+            waitlistService.onSlotFreed(previousMasterId, appointment.getAppointmentDate());
+        }
+        appointmentReminderService.schedule(updatedAppointment);
         log.info("Мастер {} назначен на запись {}", master.getEmail(), appointmentId);
 
         return mapToAppointmentDTO(updatedAppointment);
@@ -152,34 +315,42 @@ public class AppointmentService {
         }
 
         appointmentRepository.delete(appointment);
+        masterAvailabilityService.removeBooking(appointment);
+        slotClaimService.release(id);
+        appointmentReminderService.cancel(id);
+        if (appointment.getStatus() != AppointmentStatus.CANCELLED) {
+            waitlistService.onSlotFreed(appointment.resolveMasterId(), appointment.getAppointmentDate());
+        }
         log.info("Запись {} удалена", id);
     }
 
-    public List<LocalDateTime> getAvailableSlots(String masterId, LocalDateTime date) {
-        // Получаем занятые слоты мастера на указанную дату
-        LocalDateTime startOfDay = date.toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-
-        List<Appointment> existingAppointments = appointmentRepository
-                .findByMasterAndDateRange(masterId, startOfDay, endOfDay);
+    /**
+     * Свободные слоты мастера на дату для услуги (без услуги - стандартной длительности)
+     */
+    public List<LocalDateTime> getAvailableSlots(String masterId, LocalDateTime date, String serviceId) {
+        int duration = serviceId != null
+                ? MasterAvailabilityService.durationOf(serviceService.findById(serviceId))
+                : Constants.Defaults.DEFAULT_SERVICE_DURATION;
+
+        WorkingHoursService.DayTemplate workingDay = workingHoursService.getDayTemplate(date.toLocalDate());
+        if (workingDay == null) {
+            return List.of(); // Выходной день
+        }
 
-        // Генерируем доступные слоты (с 9:00 до 18:00 каждый час)
-        List<LocalDateTime> availableSlots = java.util.stream.IntStream.range(9, 18)
-                .mapToObj(hour -> date.toLocalDate().atTime(hour, 0))
-                .filter(slot -> slot.isAfter(LocalDateTime.now())) // Только будущие слоты
-                .filter(slot -> existingAppointments.stream()
-                        .noneMatch(app -> app.getAppointmentDate().equals(slot)))
+        LocalDateTime now = LocalDateTime.now();
+        return masterAvailabilityService.findFreeSlots(masterId, date.toLocalDate(), duration,
+                workingDay.open(), workingDay.close(), slotStepMinutes).stream()
+                .filter(slot -> slot.isAfter(now)) // Только будущие слоты
                 .collect(Collectors.toList());
-
-        return availableSlots;
     }
 
-    private void validateMasterAvailability(String masterId, LocalDateTime appointmentDate) {
-        List<Appointment> conflictingAppointments = appointmentRepository
-                .findByMasterAndDateRange(masterId, appointmentDate, appointmentDate);
+    private void validateMasterAvailability(String masterId, LocalDateTime appointmentDate, int durationMinutes,
+            String appointmentId) {
+        MasterAvailabilityService.BookedInterval conflict = masterAvailabilityService
+                .findConflict(masterId, appointmentDate, durationMinutes, appointmentId);
 
-        if (!conflictingAppointments.isEmpty()) {
-            throw new BusinessException("Мастер уже занят в указанное время");
+        if (conflict != null) {
+            throw new BusinessException(conflict.toConflictMessage());
         }
     }
 
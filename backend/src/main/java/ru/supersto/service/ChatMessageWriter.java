@@ -0,0 +1,254 @@
+package ru.supersto.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.ChatMessage;
+import ru.supersto.exception.BusinessException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Групповая запись сообщений чата.
+ * Сообщения попадают в ограниченную очередь, отдельный поток сохраняет их одним insertMany каждые
+ * flush-interval-ms или по набору max-batch-size сообщений. При wait-for-ack вызывающий получает
+ * сообщение после подтверждения записи своего пакета; без него - сразу после постановки в очередь.
+ * Действия после записи выполняются ровно один раз и только для сохраненного сообщения: вызывающим
+ * потоком, если он дождался подтверждения, иначе в пуле taskExecutor после записи пакета.
+ */
+@Service
+@Slf4j
+public class ChatMessageWriter {
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor afterWriteExecutor;
+    private final boolean enabled;
+    private final boolean waitForAck;
+    private final int maxBatchSize;
+    private final long flushIntervalMs;
+    private final long ackTimeoutMs;
+    private final BlockingQueue<PendingWrite> queue;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public ChatMessageWriter(MongoTemplate mongoTemplate,
+            @Qualifier("taskExecutor") Executor afterWriteExecutor,
+            @Value("${app.chat.write-batching.enabled:true}") boolean enabled,
+            @Value("${app.chat.write-batching.wait-for-ack:true}") boolean waitForAck,
+            @Value("${app.chat.write-batching.max-batch-size:100}") int maxBatchSize,
+            @Value("${app.chat.write-batching.flush-interval-ms:5}") long flushIntervalMs,
+            @Value("${app.chat.write-batching.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.chat.write-batching.ack-timeout-ms:5000}") long ackTimeoutMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.afterWriteExecutor = afterWriteExecutor;
+        this.enabled = enabled;
+        this.waitForAck = waitForAck;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "SuperSTO-ChatWriter");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Дописать очередь и остановить поток записи
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join(ackTimeoutMs);
+        }
+    }
+
+    /**
+     * Сохранить сообщение в составе ближайшего пакета и выполнить afterWrite после подтверждения записи
+     */
+    public ChatMessage write(ChatMessage message, Consumer<ChatMessage> afterWrite) {
+        if (!enabled || !running) {
+            ChatMessage saved = mongoTemplate.insert(message);
+            afterWrite.accept(saved);
+            return saved;
+        }
+
+        // ID назначается заранее, чтобы сообщение можно было вернуть до записи пакета
+        if (message.getId() == null) {
+            message.setId(new ObjectId().toHexString());
+        }
+        PendingWrite pending = new PendingWrite(message, afterWrite, waitForAck);
+        pending.result().whenComplete((saved, error) -> onWritten(pending, saved, error));
+        try {
+            if (!queue.offer(pending, ackTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new BusinessException("Сервис сообщений перегружен, повторите попытку позже");
+            }
+            if (!waitForAck) {
+                return message;
+            }
+            ChatMessage saved = pending.result().get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+            if (pending.claimAfterWrite()) {
+                afterWrite.accept(saved);
+            }
+            return saved;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(pending);
+            throw new BusinessException("Отправка сообщения прервана");
+        } catch (TimeoutException e) {
+            // Сообщение остается в очереди и будет записано: действия после записи выполнит пул
+            abandon(pending);
+            throw new BusinessException("Сообщение не подтверждено вовремя, проверьте переписку перед повтором");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Вызывающий больше не ждет: если пакет уже записан, действия после записи передаются в пул
+     */
+    private void abandon(PendingWrite pending) {
+        pending.callerWaiting().set(false);
+        if (pending.result().isDone()) {
+            pending.result().whenComplete((saved, error) -> onWritten(pending, saved, error));
+        }
+    }
+
+    /**
+     * Завершение записи без ожидающего вызывающего: ошибка логируется, действия после записи
+     * выполняются в пуле, чтобы не задерживать поток записи
+     */
+    private void onWritten(PendingWrite pending, ChatMessage saved, Throwable error) {
+        if (pending.callerWaiting().get()) {
+            return;
+        }
+        if (error != null) {
+            if (pending.claimAfterWrite()) {
+                log.error("Сообщение чата {} не сохранено: {}", pending.message().getId(), error.getMessage());
+            }
+            return;
+        }
+        if (!pending.claimAfterWrite()) {
+            return;
+        }
+        Runnable afterWrite = () -> {
+            try {
+                pending.afterWrite().accept(saved);
+            } catch (RuntimeException e) {
+                log.error("Ошибка обработки сохраненного сообщения чата {}: {}", saved.getId(), e.getMessage(), e);
+            }
+        };
+        try {
+            afterWriteExecutor.execute(afterWrite);
+        } catch (TaskRejectedException e) {
+            afterWrite.run();
+        }
+    }
+
+    private void runFlusher() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                flush(collectBatch(first));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ошибка в потоке записи сообщений чата: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Набрать пакет: ждем остальные сообщения не дольше интервала от первого
+     */
+    private List<PendingWrite> collectBatch(PendingWrite first) throws InterruptedException {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                break;
+            }
+            PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<ChatMessage> messages = batch.stream().map(PendingWrite::message).toList();
+        try {
+            mongoTemplate.insert(messages, ChatMessage.class);
+            batch.forEach(pending -> pending.result().complete(pending.message()));
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Пакет из {} сообщений не записан целиком, записываем по одному: {}",
+                    batch.size(), e.getMessage());
+        }
+
+        // Часть пакета могла быть записана до ошибки - повторяем поштучно, уже записанные пропускаем
+        for (PendingWrite pending : batch) {
+            try {
+                ChatMessage message = pending.message();
+                if (!mongoTemplate.exists(Query.query(Criteria.where("id").is(message.getId())), ChatMessage.class)) {
+                    mongoTemplate.insert(message);
+                }
+                pending.result().complete(message);
+            } catch (RuntimeException e) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    private record PendingWrite(ChatMessage message, Consumer<ChatMessage> afterWrite,
+            CompletableFuture<ChatMessage> result, AtomicBoolean callerWaiting, AtomicBoolean afterWriteClaimed) {
+
+        PendingWrite(ChatMessage message, Consumer<ChatMessage> afterWrite, boolean callerWaiting) {
+            this(message, afterWrite, new CompletableFuture<>(), new AtomicBoolean(callerWaiting),
+                    new AtomicBoolean());
+        }
+
+        boolean claimAfterWrite() {
+            return afterWriteClaimed.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import ru.supersto.dto.ChatMessageDTO;
+import ru.supersto.dto.ChatReadReceiptDTO;
+import ru.supersto.util.Constants;
+
+/**
+ * Доставка событий чата подключенным по STOMP пользователям.
+ * Адресат определяется по email (имя пользователя в Principal). Ошибка доставки не влияет на
+ * сохраненное сообщение: клиент без подключения получит его при следующем запросе переписки.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatPushService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Новое сообщение получателю и остальным сессиям отправителя
+     */
+    public void pushMessage(ChatMessageDTO message) {
+        send(message.getRecipientEmail(), Constants.WebSocket.CHAT_QUEUE, message);
+        send(message.getSenderEmail(), Constants.WebSocket.CHAT_QUEUE, message);
+    }
+
+    /**
+     * Отметка о прочтении автору сообщений
+     */
+    public void pushReadReceipt(String authorEmail, ChatReadReceiptDTO receipt) {
+        send(authorEmail, Constants.WebSocket.CHAT_READ_QUEUE, receipt);
+    }
+
+    private void send(String userEmail, String destination, Object payload) {
+        try {
+            messagingTemplate.convertAndSendToUser(userEmail, destination, payload);
+        } catch (MessagingException e) {
+            log.warn("Не удалось доставить событие чата {} пользователю {}: {}",
+                    destination, userEmail, e.getMessage());
+        }
+    }
+}
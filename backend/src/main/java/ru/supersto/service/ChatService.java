@@ -2,16 +2,29 @@ package ru.supersto.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import ru.supersto.dto.ChatMessageDTO;
+import ru.supersto.dto.ChatMessagePageDTO;
+import ru.supersto.dto.ChatReadReceiptDTO;
+import ru.supersto.dto.ConversationDTO;
 import ru.supersto.entity.ChatMessage;
 import ru.supersto.entity.User;
 import ru.supersto.exception.BusinessException;
 import ru.supersto.exception.ResourceNotFoundException;
 import ru.supersto.repository.ChatMessageRepository;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,8 +32,15 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatService {
 
+        private static final int MAX_PAGE_SIZE = 100;
+
         private final ChatMessageRepository chatMessageRepository;
         private final UserService userService;
+        private final ChatPushService chatPushService;
+        private final ChatMessageWriter chatMessageWriter;
+        private final ConversationService conversationService;
+        private final UnreadCounterService unreadCounterService;
+        private final MongoTemplate mongoTemplate;
 
         public ChatMessageDTO sendMessage(ChatMessageDTO messageDTO) {
                 User sender = userService.getCurrentUser();
@@ -38,13 +58,22 @@ public class ChatService {
                                 .build();
 
                 message.prePersist();
-                ChatMessage savedMessage = chatMessageRepository.save(message);
+                ChatMessage savedMessage = chatMessageWriter.write(message, this::onMessagePersisted);
 
                 log.info("Сообщение отправлено от {} к {}", sender.getEmail(), recipient.getEmail());
 
                 return mapToDTO(savedMessage);
         }
 
+        /**
+         * Сводка переписки, счетчик непрочитанных и push обновляются только после записи сообщения
+         */
+        private void onMessagePersisted(ChatMessage message) {
+                conversationService.onMessageSent(message);
+                unreadCounterService.increment(UnreadCounterService.Kind.CHAT, message.resolveRecipientId());
+                chatPushService.pushMessage(mapToDTO(message));
+        }
+
         public List<ChatMessageDTO> getConversation(String otherUserId) {
                 User currentUser = userService.getCurrentUser();
                 User otherUser = userService.getUserById(otherUserId);
@@ -52,17 +81,83 @@ public class ChatService {
                 // Проверяем права доступа
                 validateChatPermissions(currentUser, otherUser);
 
-                List<ChatMessage> messages = chatMessageRepository.findConversation(
-                                currentUser.getId(), otherUserId);
-
-                // Отмечаем сообщения как прочитанные
-                markMessagesAsRead(messages, currentUser.getId());
+                List<ChatMessage> messages = chatMessageRepository.findByConversationIdOrderByCreatedAtAsc(
+                                ChatMessage.conversationIdOf(currentUser.getId(), otherUserId));
 
                 return messages.stream()
                                 .map(this::mapToDTO)
                                 .collect(Collectors.toList());
         }
 
+        /**
+         * Страница переписки от новых сообщений к старым.
+         * Курсор хранит время и ID последнего выданного сообщения, поэтому каждая страница - диапазон
+         * индекса (conversation_id, created_at, _id) без пропуска уже выданных строк.
+         */
+        public ChatMessagePageDTO getConversationPage(String otherUserId, String before, int limit) {
+                User currentUser = userService.getCurrentUser();
+                User otherUser = userService.getUserById(otherUserId);
+
+                validateChatPermissions(currentUser, otherUser);
+
+                int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+                Criteria criteria = Criteria.where("conversationId")
+                                .is(ChatMessage.conversationIdOf(currentUser.getId(), otherUserId));
+                if (before != null && !before.isBlank()) {
+                        PageCursor cursor = PageCursor.decode(before);
+                        criteria = criteria.orOperator(
+                                        Criteria.where("createdAt").lt(cursor.createdAt()),
+                                        Criteria.where("createdAt").is(cursor.createdAt())
+                                                        .and("id").lt(toReferenceId(cursor.id())));
+                }
+
+                Query query = Query.query(criteria)
+                                .with(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                                .limit(pageSize + 1);
+                List<ChatMessage> messages = mongoTemplate.find(query, ChatMessage.class);
+
+                boolean hasMore = messages.size() > pageSize;
+                if (hasMore) {
+                        messages = messages.subList(0, pageSize);
+                }
+
+                Map<String, User> participants = Map.of(currentUser.getId(), currentUser, otherUserId, otherUser);
+                ChatMessage last = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+                return ChatMessagePageDTO.builder()
+                                .messages(messages.stream()
+                                                .map(message -> mapToDTO(message, participants))
+                                                .collect(Collectors.toList()))
+                                .nextCursor(hasMore ? new PageCursor(last.getCreatedAt(), last.getId()).encode() : null)
+                                .build();
+        }
+
+        /**
+         * Отметить прочитанными все входящие сообщения переписки одним обновлением.
+         * Возвращает число отмеченных сообщений.
+         */
+        public long markConversationAsRead(String otherUserId) {
+                User currentUser = userService.getCurrentUser();
+                User otherUser = userService.getUserById(otherUserId);
+
+                validateChatPermissions(currentUser, otherUser);
+
+                Query query = Query.query(Criteria.where("conversationId")
+                                .is(ChatMessage.conversationIdOf(currentUser.getId(), otherUserId))
+                                .and("recipient.id").is(toReferenceId(currentUser.getId()))
+                                .and("isRead").is(false));
+                Update update = new Update()
+                                .set("isRead", true)
+                                .set("readAt", LocalDateTime.now());
+                long marked = mongoTemplate.updateMulti(query, update, ChatMessage.class).getModifiedCount();
+
+                if (marked > 0) {
+                        unreadCounterService.add(UnreadCounterService.Kind.CHAT, currentUser.getId(), -marked);
+                        onConversationRead(currentUser, otherUser, marked);
+                        log.info("Отмечено {} сообщений от {} как прочитанные", marked, otherUser.getEmail());
+                }
+                return marked;
+        }
+
         public List<ChatMessageDTO> getConversationByDateRange(String otherUserId,
                         LocalDateTime startDate,
                         LocalDateTime endDate) {
@@ -72,22 +167,15 @@ public class ChatService {
                 validateChatPermissions(currentUser, otherUser);
 
                 List<ChatMessage> messages = chatMessageRepository.findConversationByDateRange(
-                                currentUser.getId(), otherUserId, startDate, endDate);
+                                ChatMessage.conversationIdOf(currentUser.getId(), otherUserId), startDate, endDate);
 
                 return messages.stream()
                                 .map(this::mapToDTO)
                                 .collect(Collectors.toList());
         }
 
-        public List<ChatMessageDTO> getMyChats() {
-                User currentUser = userService.getCurrentUser();
-
-                List<ChatMessage> messages = chatMessageRepository.findLastMessagesForUser(
-                                currentUser.getId());
-
-                return messages.stream()
-                                .map(this::mapToDTO)
-                                .collect(Collectors.toList());
+        public List<ConversationDTO> getMyChats() {
+                return conversationService.findForUser(userService.getCurrentUser());
         }
 
         public List<ChatMessageDTO> getUnreadMessages() {
@@ -104,8 +192,7 @@ public class ChatService {
         public long getUnreadCount() {
                 User currentUser = userService.getCurrentUser();
                 try {
-                        Long count = chatMessageRepository.countUnreadMessages(currentUser.getId());
-                        return count != null ? count : 0L;
+                        return unreadCounterService.get(UnreadCounterService.Kind.CHAT, currentUser.getId());
                 } catch (Exception e) {
                         log.warn("Ошибка при подсчете непрочитанных сообщений для пользователя {}: {}",
                                         currentUser.getId(), e.getMessage());
@@ -121,14 +208,24 @@ public class ChatService {
                 User currentUser = userService.getCurrentUser();
 
                 // Только получатель может отметить сообщение как прочитанное
-                if (!message.getRecipient().getId().equals(currentUser.getId())) {
+                if (!currentUser.getId().equals(message.resolveRecipientId())) {
                         throw new BusinessException("Вы можете отмечать как прочитанные только свои сообщения");
                 }
 
+                boolean wasUnread = !Boolean.TRUE.equals(message.getIsRead());
                 message.markAsRead();
                 ChatMessage updatedMessage = chatMessageRepository.save(message);
+                if (wasUnread) {
+                        unreadCounterService.add(UnreadCounterService.Kind.CHAT, currentUser.getId(), -1);
+                        conversationService.decrementUnread(updatedMessage.getConversationId(), currentUser.getId());
+                }
 
                 log.info("Сообщение {} отмечено как прочитанное", messageId);
+                chatPushService.pushReadReceipt(updatedMessage.getSender().getEmail(), ChatReadReceiptDTO.builder()
+                                .readerId(currentUser.getId())
+                                .messageId(messageId)
+                                .readAt(updatedMessage.getReadAt())
+                                .build());
 
                 return mapToDTO(updatedMessage);
         }
@@ -145,6 +242,11 @@ public class ChatService {
                 // Клиенты могут общаться только с мастерами и админами
                 // Мастера могут общаться с клиентами и админами
                 // Админы могут общаться со всеми
+                // Переписка с самим собой запрещена для всех ролей
+
+                if (user1.getId() != null && user1.getId().equals(user2.getId())) {
+                        throw new BusinessException("Нельзя отправить сообщение самому себе");
+                }
 
                 boolean isValidCombination = (user1.getRole().name().equals("CLIENT") &&
                                 (user2.getRole().name().equals("MASTER") || user2.getRole().name().equals("ADMIN"))) ||
@@ -159,28 +261,40 @@ public class ChatService {
                 }
         }
 
-        private void markMessagesAsRead(List<ChatMessage> messages, String currentUserId) {
-                List<ChatMessage> unreadMessages = messages.stream()
-                                .filter(msg -> msg.getRecipient().getId().equals(currentUserId) && !msg.getIsRead())
-                                .collect(Collectors.toList());
+        /**
+         * Уменьшить счетчик переписки на прочитанные сообщения и отправить собеседнику отметку о прочтении
+         */
+        private void onConversationRead(User reader, User otherUser, long marked) {
+                conversationService.markRead(ChatMessage.conversationIdOf(reader.getId(), otherUser.getId()),
+                                reader.getId(), marked);
+                chatPushService.pushReadReceipt(otherUser.getEmail(), ChatReadReceiptDTO.builder()
+                                .readerId(reader.getId())
+                                .readAt(LocalDateTime.now())
+                                .build());
+        }
 
-                for (ChatMessage message : unreadMessages) {
-                        message.markAsRead();
-                        chatMessageRepository.save(message);
-                }
+        private static Object toReferenceId(String id) {
+                return ObjectId.isValid(id) ? new ObjectId(id) : id;
         }
 
         private ChatMessageDTO mapToDTO(ChatMessage message) {
+                return mapToDTO(message, Map.of());
+        }
+
+        /**
+         * Участники из participants не подгружаются по ленивым ссылкам сообщения
+         */
+        private ChatMessageDTO mapToDTO(ChatMessage message, Map<String, User> participants) {
+                User sender = participants.getOrDefault(message.resolveSenderId(), message.getSender());
+                User recipient = participants.getOrDefault(message.resolveRecipientId(), message.getRecipient());
                 return ChatMessageDTO.builder()
                                 .id(message.getId())
-                                .senderId(message.getSender().getId())
-                                .senderName(message.getSender().getFirstName() + " "
-                                                + message.getSender().getLastName())
-                                .senderEmail(message.getSender().getEmail())
-                                .recipientId(message.getRecipient().getId())
-                                .recipientName(message.getRecipient().getFirstName() + " "
-                                                + message.getRecipient().getLastName())
-                                .recipientEmail(message.getRecipient().getEmail())
+                                .senderId(sender.getId())
+                                .senderName(sender.getFirstName() + " " + sender.getLastName())
+                                .senderEmail(sender.getEmail())
+                                .recipientId(recipient.getId())
+                                .recipientName(recipient.getFirstName() + " " + recipient.getLastName())
+                                .recipientEmail(recipient.getEmail())
                                 .content(message.getContent())
                                 .type(message.getType())
                                 .appointmentId(message.getAppointmentId())
@@ -189,4 +303,30 @@ public class ChatService {
                                 .readAt(message.getReadAt())
                                 .build();
         }
-}
\ No newline at end of file
+
+        /**
+         * Позиция последнего выданного сообщения страницы
+         */
+        record PageCursor(LocalDateTime createdAt, String id) {
+
+                String encode() {
+                        String raw = createdAt + "|" + id;
+                        return Base64.getUrlEncoder().withoutPadding()
+                                        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+                }
+
+                static PageCursor decode(String cursor) {
+                        try {
+                                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                                int separator = raw.indexOf('|');
+                                if (separator < 0) {
+                                        throw new BusinessException("Некорректный курсор страницы");
+                                }
+                                return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                                                raw.substring(separator + 1));
+                        } catch (IllegalArgumentException | DateTimeParseException e) {
+                                throw new BusinessException("Некорректный курсор страницы");
+                        }
+                }
+        }
+}
@@ -0,0 +1,230 @@
+package ru.supersto.service;
+
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import ru.supersto.dto.ConversationDTO;
+import ru.supersto.entity.ChatMessage;
+import ru.supersto.entity.ChatMessageType;
+import ru.supersto.entity.Conversation;
+import ru.supersto.entity.User;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Сводки переписок для списка чатов.
+ * Каждая отправка и прочтение меняют сводку одним атомарным обновлением, поэтому список чатов
+ * читается одним запросом по индексу (участник, время последнего сообщения).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationService {
+
+    private static final int PREVIEW_LENGTH = 100;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final UserService userService;
+
+    /**
+     * Обновить сводку после отправки сообщения
+     */
+    public void onMessageSent(ChatMessage message) {
+        String senderId = message.resolveSenderId();
+        String recipientId = message.resolveRecipientId();
+
+        Update update = new Update()
+                .setOnInsert("participantIds", List.of(senderId, recipientId))
+                .setOnInsert("createdAt", LocalDateTime.now())
+                .set("lastMessageId", message.getId())
+                .set("lastMessagePreview", preview(message.getContent()))
+                .set("lastMessageType", message.getType())
+                .set("lastSenderId", senderId)
+                .set("lastMessageAt", message.getCreatedAt())
+                .inc("unread." + recipientId, 1L);
+        // $setOnInsert и $inc по одному полю дают конфликт путей
+        if (!senderId.equals(recipientId)) {
+            update.setOnInsert("unread." + senderId, 0L);
+        }
+        mongoTemplate.upsert(Query.query(Criteria.where("id").is(message.getConversationId())), update,
+                Conversation.class);
+    }
+
+    /**
+     * Уменьшить счетчик непрочитанных участника на число прочитанных сообщений, не опуская ниже нуля.
+     * Сообщения, пришедшие после отметки о прочтении, остаются в счетчике.
+     */
+    public void markRead(String conversationId, String userId, long marked) {
+        String field = "unread." + userId;
+        AggregationExpression decremented = context -> new Document("$max",
+                List.of(0L, new Document("$add", List.of("$" + field, -marked))));
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(conversationId).and(field).gt(0)),
+                AggregationUpdate.update().set(field).toValue(decremented), Conversation.class);
+    }
+
+    /**
+     * Уменьшить счетчик непрочитанных участника на одно сообщение
+     */
+    public void decrementUnread(String conversationId, String userId) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(conversationId).and("unread." + userId).gt(0)),
+                new Update().inc("unread." + userId, -1L), Conversation.class);
+    }
+
+    /**
+     * Список чатов пользователя от последних к старым
+     */
+    public List<ConversationDTO> findForUser(User user) {
+        Query query = Query.query(Criteria.where("participantIds").is(user.getId()))
+                .with(Sort.by(Sort.Direction.DESC, "lastMessageAt"));
+        List<Conversation> conversations = mongoTemplate.find(query, Conversation.class);
+
+        Map<String, User> others = userService.findAllByIds(conversations.stream()
+                .map(conversation -> otherParticipant(conversation, user.getId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+
+        return conversations.stream()
+                .map(conversation -> mapToDTO(conversation, user.getId(),
+                        others.get(otherParticipant(conversation, user.getId()))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Пересобрать все сводки по сообщениям. Сообщения читаются курсором в порядке индекса переписки,
+     * поэтому первое сообщение каждой переписки - последнее по времени.
+     */
+    public long rebuildSummaries() {
+        mongoTemplate.remove(new Query(), Conversation.class);
+
+        Query query = new Query()
+                .with(Sort.by(Sort.Order.asc("conversation_id"), Sort.Order.desc("created_at"),
+                        Sort.Order.desc("_id")));
+        query.addCriteria(Criteria.where("conversation_id").exists(true));
+        query.fields().include("conversation_id", "sender", "recipient", "content", "type", "is_read",
+                "created_at");
+        query.cursorBatchSize(REBUILD_BATCH_SIZE);
+
+        long rebuilt = 0;
+        List<Conversation> batch = new ArrayList<>();
+        Conversation current = null;
+        try (CloseableIterator<Document> messages = mongoTemplate.stream(query, Document.class, "chat_messages")) {
+            while (messages.hasNext()) {
+                Document message = messages.next();
+                String conversationId = message.getString("conversation_id");
+                String senderId = referenceId(message.get("sender"));
+                String recipientId = referenceId(message.get("recipient"));
+                if (senderId == null || recipientId == null) {
+                    continue;
+                }
+
+                if (current == null || !current.getId().equals(conversationId)) {
+                    if (current != null) {
+                        batch.add(current);
+                    }
+                    if (batch.size() == REBUILD_BATCH_SIZE) {
+                        mongoTemplate.insert(batch, Conversation.class);
+                        rebuilt += batch.size();
+                        batch = new ArrayList<>();
+                    }
+                    current = summaryOf(conversationId, senderId, recipientId, message);
+                }
+                if (!Boolean.TRUE.equals(message.getBoolean("is_read"))) {
+                    current.getUnread().merge(recipientId, 1L, Long::sum);
+                }
+            }
+        }
+        if (current != null) {
+            batch.add(current);
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, Conversation.class);
+            rebuilt += batch.size();
+        }
+
+        log.info("Пересобрано {} сводок переписок", rebuilt);
+        return rebuilt;
+    }
+
+    public boolean hasSummaries() {
+        return mongoTemplate.exists(new Query(), Conversation.class);
+    }
+
+    private Conversation summaryOf(String conversationId, String senderId, String recipientId, Document last) {
+        Map<String, Long> unread = new HashMap<>();
+        unread.put(senderId, 0L);
+        unread.put(recipientId, 0L);
+
+        Date createdAt = last.getDate("created_at");
+        LocalDateTime lastMessageAt = createdAt != null
+                ? LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault())
+                : null;
+        String type = last.getString("type");
+        return Conversation.builder()
+                .id(conversationId)
+                .participantIds(List.of(senderId, recipientId))
+                .lastMessageId(String.valueOf(last.get("_id")))
+                .lastMessagePreview(preview(last.getString("content")))
+                .lastMessageType(type != null ? ChatMessageType.valueOf(type) : null)
+                .lastSenderId(senderId)
+                .lastMessageAt(lastMessageAt)
+                .unread(unread)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private ConversationDTO mapToDTO(Conversation conversation, String userId, User other) {
+        Long unread = conversation.getUnread() != null ? conversation.getUnread().get(userId) : null;
+        return ConversationDTO.builder()
+                .conversationId(conversation.getId())
+                .otherUserId(other != null ? other.getId() : otherParticipant(conversation, userId))
+                .otherUserName(other != null ? other.getFirstName() + " " + other.getLastName() : null)
+                .otherUserEmail(other != null ? other.getEmail() : null)
+                .otherUserRole(other != null ? other.getRole() : null)
+                .lastMessageId(conversation.getLastMessageId())
+                .lastMessagePreview(conversation.getLastMessagePreview())
+                .lastMessageType(conversation.getLastMessageType())
+                .lastSenderId(conversation.getLastSenderId())
+                .lastMessageAt(conversation.getLastMessageAt())
+                .unreadCount(unread != null ? unread : 0L)
+                .build();
+    }
+
+    private static String otherParticipant(Conversation conversation, String userId) {
+        return conversation.getParticipantIds().stream()
+                .filter(participantId -> !participantId.equals(userId))
+                .findFirst()
+                .orElse(userId);
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH) + "…";
+    }
+
+    private static String referenceId(Object reference) {
+        return reference instanceof DBRef dbRef ? String.valueOf(dbRef.getId()) : null;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.StockReservation;
+import ru.supersto.entity.StockReservationItem;
+import ru.supersto.entity.StockReservationStatus;
+import ru.supersto.repository.StockReservationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Журнал резервов товаров под заказы.
+ * Неподтвержденный заказ удерживает товар ограниченное время; просроченные резервы разбирает
+ * {@link OrderService#settleExpiredHolds()}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryReservationService {
+
+    private final StockReservationRepository stockReservationRepository;
+    private final ProductService productService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.inventory.hold-ttl-minutes:30}")
+    private long holdTtlMinutes;
+
+    /**
+     * Зафиксировать резерв уже списанных со склада товаров за заказом
+     */
+    public StockReservation hold(String orderId, Map<String, Integer> quantities) {
+        StockReservation reservation = StockReservation.builder()
+                .orderId(orderId)
+                .items(toItems(quantities))
+                .status(StockReservationStatus.HELD)
+                .expiresAt(LocalDateTime.now().plusMinutes(holdTtlMinutes))
+                .build();
+
+        reservation.prePersist();
+        StockReservation saved = stockReservationRepository.save(reservation);
+        log.info("Создан резерв товаров для заказа {} до {}", orderId, saved.getExpiresAt());
+        return saved;
+    }
+
+    /**
+     * Добавить позиции в действующий резерв заказа
+     */
+    public void addItems(String orderId, Map<String, Integer> quantities) {
+        Query query = Query.query(Criteria.where("orderId").is(orderId)
+                .and("status").is(StockReservationStatus.HELD));
+        Update update = new Update().push("items").each(toItems(quantities).toArray());
+        mongoTemplate.updateFirst(query, update, StockReservation.class);
+    }
+
+    /**
+     * Подтвердить резерв: товар остается за заказом без срока истечения
+     */
+    public void confirm(String orderId) {
+        Query query = Query.query(Criteria.where("orderId").is(orderId)
+                .and("status").is(StockReservationStatus.HELD));
+        Update update = new Update()
+                .set("status", StockReservationStatus.CONFIRMED)
+                .set("confirmedAt", LocalDateTime.now())
+                .unset("expiresAt");
+
+        if (mongoTemplate.updateFirst(query, update, StockReservation.class).getModifiedCount() > 0) {
+            log.info("Резерв товаров для заказа {} подтвержден", orderId);
+        }
+    }
+
+    /**
+     * Снять резерв заказа и вернуть товары на склад. Повторный вызов ничего не возвращает.
+     * Для заказов, созданных до появления журнала, товары возвращаются по позициям заказа.
+     */
+    public void release(String orderId, Map<String, Integer> orderQuantities) {
+        StockReservation reservation = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("orderId").is(orderId)
+                        .and("status").in(StockReservationStatus.HELD, StockReservationStatus.CONFIRMED)),
+                releaseUpdate(),
+                StockReservation.class);
+
+        if (reservation != null) {
+            productService.releaseStock(toQuantities(reservation.getItems()));
+            log.info("Резерв товаров для заказа {} снят", orderId);
+        } else if (!stockReservationRepository.existsByOrderId(orderId)) {
+            productService.releaseStock(orderQuantities);
+        }
+    }
+
+    /**
+     * Резервы, срок которых истек, а заказ так и не был подтвержден
+     */
+    public List<StockReservation> findExpiredHolds() {
+        return stockReservationRepository.findByStatusAndExpiresAtBefore(StockReservationStatus.HELD,
+                LocalDateTime.now());
+    }
+
+    /**
+     * Снять резерв и вернуть товары на склад, только если он все еще HELD: резерв мог быть подтвержден
+     * или снят после выборки
+     */
+    public boolean releaseHold(String reservationId) {
+        return returnHold(reservationId, StockReservationStatus.RELEASED);
+    }
+
+    /**
+     * Вернуть товары просроченного резерва на склад, не трогая заказ. Резерв получает статус EXPIRED
+     * и больше не выбирается как просроченный; последующая отмена заказа товар повторно не возвращает.
+     */
+    public boolean expireHold(String reservationId) {
+        return returnHold(reservationId, StockReservationStatus.EXPIRED);
+    }
+
+    private boolean returnHold(String reservationId, StockReservationStatus outcome) {
+        StockReservation reservation = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(reservationId)
+                        .and("status").is(StockReservationStatus.HELD)),
+                releaseUpdate(outcome),
+                StockReservation.class);
+        if (reservation == null) {
+            return false;
+        }
+
+        productService.releaseStock(toQuantities(reservation.getItems()));
+        log.info("Резерв товаров для заказа {} снят со статусом {}", reservation.getOrderId(), outcome);
+        return true;
+    }
+
+    private Update releaseUpdate() {
+        return releaseUpdate(StockReservationStatus.RELEASED);
+    }
+
+    private Update releaseUpdate(StockReservationStatus outcome) {
+        return new Update()
+                .set("status", outcome)
+                .set("releasedAt", LocalDateTime.now());
+    }
+
+    private List<StockReservationItem> toItems(Map<String, Integer> quantities) {
+        return quantities.entrySet().stream()
+                .map(entry -> StockReservationItem.builder()
+                        .productId(entry.getKey())
+                        .quantity(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, Integer> toQuantities(List<StockReservationItem> items) {
+        return items.stream()
+                .collect(Collectors.toMap(StockReservationItem::getProductId, StockReservationItem::getQuantity,
+                        Integer::sum));
+    }
+}
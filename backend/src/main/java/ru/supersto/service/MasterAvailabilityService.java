@@ -0,0 +1,442 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.Appointment;
+import ru.supersto.entity.AppointmentStatus;
+import ru.supersto.util.Constants;
+import ru.supersto.util.DateUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс занятости мастеров в памяти: битовая карта 5-минутных слотов на каждый день мастера.
+ * День загружается из MongoDB при первом обращении и далее обновляется при создании, отмене и назначении записей.
+ * Изменения с других узлов сюда не приходят, поэтому день перечитывается после availability-ttl-ms.
+ * Загружаемый день публикуется в индексе до запроса к базе: изменения, пришедшие во время загрузки,
+ * ждут ее окончания и применяются поверх прочитанных записей, а не теряются.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MasterAvailabilityService {
+
+    private static final int SLOT_MINUTES = Constants.Scheduling.SLOT_MINUTES;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    private final MongoTemplate mongoTemplate;
+    private final ServiceService serviceService;
+
+    @Value("${app.scheduling.availability-ttl-ms:300000}")
+    private long availabilityTtlMs;
+
+    private final ConcurrentMap<DayKey, DaySchedule> schedules = new ConcurrentHashMap<>();
+
+    /**
+     * Длительность услуги в минутах (по умолчанию - стандартная)
+     */
+    public static int durationOf(ru.supersto.entity.Service service) {
+        return service != null && service.getDuration() != null && service.getDuration() > 0
+                ? service.getDuration()
+                : Constants.Defaults.DEFAULT_SERVICE_DURATION;
+    }
+
+    /**
+     * Начала свободных интервалов заданной длительности в рабочем окне дня с шагом stepMinutes
+     */
+    public List<LocalDateTime> findFreeSlots(String masterId, LocalDate date, int durationMinutes,
+            LocalTime workStart, LocalTime workEnd, int stepMinutes) {
+        int from = toSlot(workStart);
+        int to = toSlot(workEnd);
+        int length = toSlotCount(durationMinutes);
+        int step = Math.max(1, stepMinutes / SLOT_MINUTES);
+
+        return getSchedule(masterId, date).freeStarts(from, to, length, step).stream()
+                .map(slot -> date.atStartOfDay().plusMinutes((long) slot * SLOT_MINUTES))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Свободные промежутки мастера в рабочем окне дня
+     */
+    public List<FreeGap> findFreeGaps(String masterId, LocalDate date, LocalTime workStart, LocalTime workEnd) {
+        LocalDateTime dayStart = date.atStartOfDay();
+        return getSchedule(masterId, date).freeGaps(toSlot(workStart), toSlot(workEnd)).stream()
+                .map(gap -> new FreeGap(
+                        dayStart.plusMinutes((long) gap[0] * SLOT_MINUTES),
+                        dayStart.plusMinutes((long) gap[1] * SLOT_MINUTES)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Свободен ли мастер на весь интервал услуги
+     */
+    public boolean isFree(String masterId, LocalDateTime start, int durationMinutes) {
+        int from = toSlot(start.toLocalTime());
+        return getSchedule(masterId, start.toLocalDate()).isFree(from, endSlot(from, durationMinutes));
+    }
+
+    /**
+     * Запись мастера, пересекающаяся с интервалом услуги (null - мастер свободен).
+     * Запись ignoredAppointmentId не считается конфликтом, чтобы переназначение не конфликтовало само с собой.
+     */
+    public BookedInterval findConflict(String masterId, LocalDateTime start, int durationMinutes,
+            String ignoredAppointmentId) {
+        int from = toSlot(start.toLocalTime());
+        int[] conflict = getSchedule(masterId, start.toLocalDate())
+                .findConflict(from, endSlot(from, durationMinutes), ignoredAppointmentId);
+        if (conflict == null) {
+            return null;
+        }
+        LocalDateTime dayStart = start.toLocalDate().atStartOfDay();
+        return new BookedInterval(
+                dayStart.plusMinutes((long) conflict[0] * SLOT_MINUTES),
+                dayStart.plusMinutes((long) conflict[1] * SLOT_MINUTES));
+    }
+
+    /**
+     * Учесть запись в индексе. Записи без мастера и отмененные не занимают время.
+     */
+    public void addBooking(Appointment appointment) {
+        String masterId = appointment.resolveMasterId();
+        if (masterId == null || appointment.getAppointmentDate() == null
+                || appointment.getStatus() == AppointmentStatus.CANCELLED) {
+            return;
+        }
+
+        DaySchedule schedule = schedules.get(new DayKey(masterId, appointment.getAppointmentDate().toLocalDate()));
+        // Незагруженный день будет прочитан из базы при первом обращении
+        if (schedule != null) {
+            int from = toSlot(appointment.getAppointmentDate().toLocalTime());
+            schedule.add(appointment.getId(), from, endSlot(from, durationOf(appointment.getService())));
+        }
+    }
+
+    public void removeBooking(Appointment appointment) {
+        removeBooking(appointment.resolveMasterId(), appointment.getAppointmentDate(), appointment.getId());
+    }
+
+    public void removeBooking(String masterId, LocalDateTime appointmentDate, String appointmentId) {
+        if (masterId == null || appointmentDate == null) {
+            return;
+        }
+        DaySchedule schedule = schedules.get(new DayKey(masterId, appointmentDate.toLocalDate()));
+        if (schedule != null) {
+            schedule.remove(appointmentId);
+        }
+    }
+
+    /**
+     * Загрузить занятость нескольких мастеров на диапазон дней одним запросом
+     */
+    public void preload(Collection<String> masterIds, LocalDate from, LocalDate toExclusive) {
+        List<DayKey> keys = new ArrayList<>();
+        for (String masterId : masterIds) {
+            from.datesUntil(toExclusive).forEach(date -> keys.add(new DayKey(masterId, date)));
+        }
+        Map<DayKey, DaySchedule> claimed = claim(keys);
+        if (!claimed.isEmpty()) {
+            loadSchedules(claimed, from, toExclusive);
+        }
+    }
+
+    /**
+     * Занятое время мастера в минутах за загруженные дни диапазона
+     */
+    public int bookedMinutes(String masterId, LocalDate from, LocalDate toExclusive) {
+        return from.datesUntil(toExclusive)
+                .map(date -> schedules.get(new DayKey(masterId, date)))
+                .filter(Objects::nonNull)
+                .mapToInt(schedule -> schedule.busySlots() * SLOT_MINUTES)
+                .sum();
+    }
+
+    /**
+     * Удалить из индекса прошедшие дни
+     */
+    public int evictBefore(LocalDate date) {
+        int before = schedules.size();
+        schedules.keySet().removeIf(key -> key.date().isBefore(date));
+        return before - schedules.size();
+    }
+
+    private DaySchedule getSchedule(String masterId, LocalDate date) {
+        DayKey key = new DayKey(masterId, date);
+        while (true) {
+            DaySchedule schedule = schedules.get(key);
+            if (schedule != null && !isExpired(schedule)) {
+                return schedule;
+            }
+            Map<DayKey, DaySchedule> claimed = claim(List.of(key));
+            if (!claimed.isEmpty()) {
+                loadSchedules(claimed, date, date.plusDays(1));
+                return claimed.get(key);
+            }
+            // День успел занять другой поток - берем его расписание
+        }
+    }
+
+    private boolean isExpired(DaySchedule schedule) {
+        return System.currentTimeMillis() - schedule.createdAt() >= availabilityTtlMs;
+    }
+
+    /**
+     * Опубликовать пустые расписания для незагруженных и устаревших дней.
+     * Возвращаются только дни, которые должен загрузить текущий поток.
+     */
+    private Map<DayKey, DaySchedule> claim(Collection<DayKey> keys) {
+        Map<DayKey, DaySchedule> claimed = new LinkedHashMap<>();
+        for (DayKey key : keys) {
+            DaySchedule current = schedules.get(key);
+            if (current != null && !isExpired(current)) {
+                continue;
+            }
+            DaySchedule created = new DaySchedule();
+            boolean published = current == null
+                    ? schedules.putIfAbsent(key, created) == null
+                    : schedules.replace(key, current, created);
+            if (published) {
+                claimed.put(key, created);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Заполнить опубликованные расписания записями из базы. При ошибке расписания снимаются из индекса,
+     * чтобы следующее обращение загрузило день заново.
+     */
+    private void loadSchedules(Map<DayKey, DaySchedule> claimed, LocalDate from, LocalDate toExclusive) {
+        try {
+            Map<DayKey, Map<String, int[]>> bookings = findBookings(claimed, from, toExclusive);
+            claimed.forEach((key, schedule) -> schedule.fill(bookings.getOrDefault(key, Map.of())));
+        } catch (RuntimeException e) {
+            claimed.forEach((key, schedule) -> {
+                schedules.remove(key, schedule);
+                schedule.fill(Map.of());
+            });
+            throw e;
+        }
+    }
+
+    private Map<DayKey, Map<String, int[]>> findBookings(Map<DayKey, DaySchedule> claimed, LocalDate from,
+            LocalDate toExclusive) {
+        Set<String> masterIds = claimed.keySet().stream().map(DayKey::masterId).collect(Collectors.toSet());
+
+        Query query = Query.query(Criteria.where("master.id").in(toReferenceIds(masterIds))
+                .and("appointmentDate").gte(from.atStartOfDay()).lt(toExclusive.atStartOfDay())
+                .and("status").ne(AppointmentStatus.CANCELLED));
+        query.fields().include("master", "service", "appointmentDate");
+        List<Appointment> appointments = mongoTemplate.find(query, Appointment.class);
+
+        Set<String> serviceIds = appointments.stream()
+                .map(Appointment::resolveServiceId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Integer> durations = serviceIds.isEmpty() ? Map.of() : serviceService.findDurationsByIds(serviceIds);
+
+        Map<DayKey, Map<String, int[]>> bookings = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            DayKey key = new DayKey(appointment.resolveMasterId(), appointment.getAppointmentDate().toLocalDate());
+            if (claimed.containsKey(key)) {
+                int start = toSlot(appointment.getAppointmentDate().toLocalTime());
+                int duration = durations.getOrDefault(appointment.resolveServiceId(),
+                        Constants.Defaults.DEFAULT_SERVICE_DURATION);
+                bookings.computeIfAbsent(key, k -> new HashMap<>())
+                        .put(appointment.getId(), new int[] { start, endSlot(start, duration) });
+            }
+        }
+
+        log.debug("Загружена занятость {} мастеров с {} по {}: {} записей",
+                masterIds.size(), from, toExclusive, appointments.size());
+        return bookings;
+    }
+
+    private List<Object> toReferenceIds(Collection<String> ids) {
+        return ids.stream()
+                .map(id -> ObjectId.isValid(id) ? new ObjectId(id) : id)
+                .collect(Collectors.toList());
+    }
+
+    private static int toSlot(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    private static int toSlotCount(int minutes) {
+        return Math.max(1, (minutes + SLOT_MINUTES - 1) / SLOT_MINUTES);
+    }
+
+    private static int endSlot(int start, int durationMinutes) {
+        return Math.min(SLOTS_PER_DAY, start + toSlotCount(durationMinutes));
+    }
+
+    private record DayKey(String masterId, LocalDate date) {
+    }
+
+    /**
+     * Занятый интервал мастера
+     */
+    public record BookedInterval(LocalDateTime start, LocalDateTime end) {
+
+        public String toConflictMessage() {
+            return String.format("Мастер уже занят с %s до %s",
+                    DateUtils.formatTime(start.toLocalTime()), DateUtils.formatTime(end.toLocalTime()));
+        }
+    }
+
+    /**
+     * Свободный промежуток между записями мастера
+     */
+    public record FreeGap(LocalDateTime start, LocalDateTime end) {
+    }
+
+    /**
+     * Занятость мастера за один день. Битовая карта пересобирается из списка записей при удалении,
+     * поэтому отмена одной из пересекающихся записей не освобождает время другой.
+     * До заполнения из базы все обращения ждут окончания загрузки.
+     */
+    private static final class DaySchedule {
+
+        private final BitSet busy = new BitSet(SLOTS_PER_DAY);
+        private final Map<String, int[]> bookings = new HashMap<>();
+        private final long createdAt = System.currentTimeMillis();
+        private boolean loading = true;
+
+        long createdAt() {
+            return createdAt;
+        }
+
+        synchronized void fill(Map<String, int[]> loaded) {
+            bookings.putAll(loaded);
+            rebuild();
+            loading = false;
+            notifyAll();
+        }
+
+        synchronized void add(String appointmentId, int start, int end) {
+            awaitLoaded();
+            int[] previous = bookings.put(appointmentId, new int[] { start, end });
+            if (previous != null) {
+                rebuild();
+            } else {
+                busy.set(start, end);
+            }
+        }
+
+        synchronized void remove(String appointmentId) {
+            awaitLoaded();
+            if (bookings.remove(appointmentId) != null) {
+                rebuild();
+            }
+        }
+
+        synchronized int busySlots() {
+            awaitLoaded();
+            return busy.cardinality();
+        }
+
+        synchronized boolean isFree(int start, int end) {
+            awaitLoaded();
+            int next = busy.nextSetBit(start);
+            return next < 0 || next >= end;
+        }
+
+        /**
+         * Битовая карта отвечает, есть ли пересечение; перебор записей нужен только при конфликте
+         */
+        synchronized int[] findConflict(int start, int end, String ignoredAppointmentId) {
+            if (isFree(start, end)) {
+                return null;
+            }
+            return bookings.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(ignoredAppointmentId))
+                    .map(Map.Entry::getValue)
+                    .filter(booking -> booking[0] < end && booking[1] > start)
+                    .min(Comparator.comparingInt(booking -> booking[0]))
+                    .orElse(null);
+        }
+
+        /**
+         * Перебор свободных промежутков по словам битовой карты, без проверки каждого слота
+         */
+        synchronized List<Integer> freeStarts(int from, int to, int length, int step) {
+            awaitLoaded();
+            List<Integer> starts = new ArrayList<>();
+            int position = from;
+            while (position < to) {
+                int gapStart = busy.nextClearBit(position);
+                if (gapStart >= to) {
+                    break;
+                }
+                int gapEnd = busy.nextSetBit(gapStart);
+                if (gapEnd < 0 || gapEnd > to) {
+                    gapEnd = to;
+                }
+
+                // Кандидаты выровнены по сетке шага от начала рабочего дня
+                int candidate = from + ((gapStart - from + step - 1) / step) * step;
+                for (; candidate + length <= gapEnd; candidate += step) {
+                    starts.add(candidate);
+                }
+                position = gapEnd;
+            }
+            return starts;
+        }
+
+        synchronized List<int[]> freeGaps(int from, int to) {
+            awaitLoaded();
+            List<int[]> gaps = new ArrayList<>();
+            int position = from;
+            while (position < to) {
+                int gapStart = busy.nextClearBit(position);
+                if (gapStart >= to) {
+                    break;
+                }
+                int gapEnd = busy.nextSetBit(gapStart);
+                if (gapEnd < 0 || gapEnd > to) {
+                    gapEnd = to;
+                }
+                gaps.add(new int[] { gapStart, gapEnd });
+                position = gapEnd;
+            }
+            return gaps;
+        }
+
+        private void awaitLoaded() {
+            while (loading) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Прервано ожидание загрузки занятости мастера", e);
+                }
+            }
+        }
+
+        private void rebuild() {
+            busy.clear();
+            bookings.values().forEach(booking -> busy.set(booking[0], booking[1]));
+        }
+    }
+}
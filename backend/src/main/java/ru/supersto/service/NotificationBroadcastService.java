@@ -0,0 +1,247 @@
+package ru.supersto.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import ru.supersto.dto.NotificationBroadcastDTO;
+import ru.supersto.dto.NotificationBroadcastRequest;
+import ru.supersto.entity.Notification;
+import ru.supersto.entity.NotificationType;
+import ru.supersto.entity.User;
+import ru.supersto.exception.BusinessException;
+import ru.supersto.exception.ResourceNotFoundException;
+import ru.supersto.util.DateUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая рассылка уведомлений.
+ * Получатели читаются курсором, уведомления записываются пакетами одной неупорядоченной вставкой,
+ * между пакетами выдерживается пауза, чтобы рассылка не вытесняла обычную нагрузку на базу.
+ * Ход рассылки хранится в памяти узла, запустившего ее.
+ */
+@Service
+@Slf4j
+public class NotificationBroadcastService {
+
+    private static final long FINISHED_RETENTION_HOURS = 24;
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor executor;
+    private final UnreadCounterService unreadCounterService;
+    private final NotificationStreamService notificationStreamService;
+    private final int chunkSize;
+    private final long chunkPauseMs;
+
+    private final ConcurrentMap<String, Broadcast> broadcasts = new ConcurrentHashMap<>();
+
+    public NotificationBroadcastService(MongoTemplate mongoTemplate,
+            @Qualifier("notificationBroadcastExecutor") Executor executor,
+            UnreadCounterService unreadCounterService,
+            NotificationStreamService notificationStreamService,
+            @Value("${app.notification.broadcast.chunk-size:1000}") int chunkSize,
+            @Value("${app.notification.broadcast.chunk-pause-ms:200}") long chunkPauseMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.executor = executor;
+        this.unreadCounterService = unreadCounterService;
+        this.notificationStreamService = notificationStreamService;
+        this.chunkSize = chunkSize;
+        this.chunkPauseMs = chunkPauseMs;
+    }
+
+    /**
+     * Поставить рассылку в очередь. Результат доступен через {@link #getProgress(String)}.
+     */
+    public NotificationBroadcastDTO start(NotificationBroadcastRequest request) {
+        evictFinished();
+
+        Query recipients = recipientsQuery(request);
+        Broadcast broadcast = new Broadcast(UUID.randomUUID().toString(), request.getTitle(),
+                mongoTemplate.count(recipients, User.class));
+        broadcasts.put(broadcast.id, broadcast);
+        try {
+            executor.execute(() -> run(broadcast, request, recipients));
+        } catch (TaskRejectedException e) {
+            broadcasts.remove(broadcast.id);
+            throw new BusinessException("Очередь рассылок заполнена, повторите попытку позже");
+        }
+
+        log.info("Рассылка {} '{}' поставлена в очередь, получателей: {}",
+                broadcast.id, request.getTitle(), broadcast.total);
+        return broadcast.toDTO();
+    }
+
+    /**
+     * Ход рассылки
+     */
+    public NotificationBroadcastDTO getProgress(String broadcastId) {
+        Broadcast broadcast = broadcasts.get(broadcastId);
+        if (broadcast == null) {
+            throw new ResourceNotFoundException("Рассылка не найдена: " + broadcastId);
+        }
+        return broadcast.toDTO();
+    }
+
+    private void run(Broadcast broadcast, NotificationBroadcastRequest request, Query recipients) {
+        broadcast.status = NotificationBroadcastDTO.Status.RUNNING;
+        broadcast.startedAt = LocalDateTime.now();
+
+        // Из пользователя нужен только ID для ссылки на получателя
+        recipients.fields().include("id");
+        recipients.cursorBatchSize(chunkSize);
+
+        List<Notification> chunk = new ArrayList<>(chunkSize);
+        try (CloseableIterator<User> users = mongoTemplate.stream(recipients, User.class)) {
+            while (users.hasNext()) {
+                chunk.add(buildNotification(users.next(), request));
+                broadcast.processed.incrementAndGet();
+                if (chunk.size() == chunkSize) {
+                    writeChunk(broadcast, chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                    Thread.sleep(chunkPauseMs);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk(broadcast, chunk);
+            }
+            broadcast.status = NotificationBroadcastDTO.Status.COMPLETED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broadcast.fail("Рассылка прервана");
+        } catch (RuntimeException e) {
+            log.error("Ошибка рассылки {}: {}", broadcast.id, e.getMessage(), e);
+            broadcast.fail(e.getMessage());
+        } finally {
+            broadcast.finishedAt = LocalDateTime.now();
+        }
+
+        log.info("Рассылка {} завершена со статусом {}: отправлено {}, ошибок {}",
+                broadcast.id, broadcast.status, broadcast.sent.get(), broadcast.failed.get());
+    }
+
+    /**
+     * Записать пакет одной неупорядоченной вставкой: ошибка одного документа не останавливает остальные
+     */
+    private void writeChunk(Broadcast broadcast, List<Notification> chunk) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class);
+        bulk.insert(chunk);
+
+        Set<Integer> failedIndexes = Set.of();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            failedIndexes = e.getErrors().stream().map(BulkWriteError::getIndex).collect(Collectors.toSet());
+            log.warn("Рассылка {}: не записано {} уведомлений из {}",
+                    broadcast.id, failedIndexes.size(), chunk.size());
+        }
+        broadcast.sent.addAndGet(chunk.size() - failedIndexes.size());
+        broadcast.failed.addAndGet(failedIndexes.size());
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (failedIndexes.contains(i)) {
+                continue;
+            }
+            Notification notification = chunk.get(i);
+            unreadCounterService.increment(UnreadCounterService.Kind.NOTIFICATION,
+                    notification.getRecipient().getId());
+            notificationStreamService.publish(notification);
+        }
+    }
+
+    private Notification buildNotification(User recipient, NotificationBroadcastRequest request) {
+        Notification notification = Notification.builder()
+                // ID назначается заранее: пакетная вставка не возвращает его в объект
+                .id(new ObjectId().toHexString())
+                .recipient(recipient)
+                .type(request.getType() != null ? request.getType() : NotificationType.INFO)
+                .title(request.getTitle())
+                .message(request.getMessage())
+                .referenceId(request.getReferenceId())
+                .referenceType(request.getReferenceType() != null ? request.getReferenceType() : "SYSTEM")
+                .actionUrl(request.getActionUrl())
+                .isRead(false)
+                .createdAt(DateUtils.nowInMoscow())
+                .build();
+        notification.prePersist();
+        return notification;
+    }
+
+    private Query recipientsQuery(NotificationBroadcastRequest request) {
+        Query query = new Query();
+        if (request.getRoles() != null && !request.getRoles().isEmpty()) {
+            query.addCriteria(Criteria.where("role").in(request.getRoles()));
+        }
+        if (request.getLoyaltyLevels() != null && !request.getLoyaltyLevels().isEmpty()) {
+            query.addCriteria(Criteria.where("loyaltyLevel").in(request.getLoyaltyLevels()));
+        }
+        if (request.isActiveOnly()) {
+            query.addCriteria(Criteria.where("isActive").ne(false));
+        }
+        return query;
+    }
+
+    private void evictFinished() {
+        LocalDateTime threshold = LocalDateTime.now().minusHours(FINISHED_RETENTION_HOURS);
+        broadcasts.values().removeIf(broadcast -> broadcast.finishedAt != null
+                && broadcast.finishedAt.isBefore(threshold));
+    }
+
+    private static final class Broadcast {
+
+        private final String id;
+        private final String title;
+        private final long total;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile NotificationBroadcastDTO.Status status = NotificationBroadcastDTO.Status.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Broadcast(String id, String title, long total) {
+            this.id = id;
+            this.title = title;
+            this.total = total;
+        }
+
+        void fail(String message) {
+            error = message;
+            status = NotificationBroadcastDTO.Status.FAILED;
+        }
+
+        NotificationBroadcastDTO toDTO() {
+            return NotificationBroadcastDTO.builder()
+                    .id(id)
+                    .title(title)
+                    .status(status)
+                    .totalRecipients(total)
+                    .processed(processed.get())
+                    .sent(sent.get())
+                    .failed(failed.get())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -2,12 +2,18 @@ package ru.supersto.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import ru.supersto.entity.Notification;
 import ru.supersto.entity.NotificationType;
+import ru.supersto.entity.ReminderType;
 import ru.supersto.entity.User;
 import ru.supersto.repository.NotificationRepository;
 import ru.supersto.util.Constants;
@@ -26,6 +32,9 @@ import java.util.concurrent.CompletableFuture;
 public class NotificationService extends BaseService<Notification, String> {
 
     private final NotificationRepository notificationRepository;
+    private final MongoTemplate mongoTemplate;
+    private final UnreadCounterService unreadCounterService;
+    private final NotificationStreamService notificationStreamService;
 
     @Override
     protected NotificationRepository getRepository() {
@@ -60,6 +69,8 @@ public class NotificationService extends BaseService<Notification, String> {
         
         notification.prePersist();
         Notification saved = save(notification);
+        unreadCounterService.increment(UnreadCounterService.Kind.NOTIFICATION, user.getId());
+        notificationStreamService.publish(saved);
         
         // Здесь можно добавить отправку push-уведомлений, email и т.д.
         sendPushNotification(saved);
@@ -87,8 +98,7 @@ public class NotificationService extends BaseService<Notification, String> {
      * Получить количество непрочитанных уведомлений
      */
     public long getUnreadCount(User user) {
-        log.debug("Подсчет непрочитанных уведомлений для пользователя: {}", user.getEmail());
-        return notificationRepository.countByRecipientAndIsReadFalse(user);
+        return unreadCounterService.get(UnreadCounterService.Kind.NOTIFICATION, user.getId());
     }
 
     /**
@@ -105,27 +115,41 @@ public class NotificationService extends BaseService<Notification, String> {
             throw new IllegalArgumentException("Уведомление не принадлежит пользователю");
         }
         
+        boolean wasUnread = !Boolean.TRUE.equals(notification.getIsRead());
         notification.markAsRead();
         
-        return update(notification);
+        Notification updated = update(notification);
+        if (wasUnread) {
+            unreadCounterService.add(UnreadCounterService.Kind.NOTIFICATION, user.getId(), -1);
+        }
+        return updated;
     }
 
     /**
-     * Отметить все уведомления как прочитанные
+     * Отметить все уведомления как прочитанные одним обновлением без загрузки документов
      */
-    public void markAllAsRead(User user) {
+    public long markAllAsRead(User user) {
         log.info("Отметка всех уведомлений как прочитанных для пользователя: {}", user.getEmail());
         
-        List<Notification> unreadNotifications = getUnreadNotifications(user);
-        
-        unreadNotifications.forEach(Notification::markAsRead);
+        Query query = Query.query(Criteria.where("recipient.id").is(toReferenceId(user.getId()))
+            .and("isRead").is(false));
+        Update update = new Update()
+            .set("isRead", true)
+            .set("readAt", LocalDateTime.now());
         
-        notificationRepository.saveAll(unreadNotifications);
-        log.info("Отмечено {} уведомлений как прочитанных", unreadNotifications.size());
+        long marked = mongoTemplate.updateMulti(query, update, Notification.class).getModifiedCount();
+        unreadCounterService.add(UnreadCounterService.Kind.NOTIFICATION, user.getId(), -marked);
+        log.info("Отмечено {} уведомлений как прочитанных", marked);
+        return marked;
+    }
+
+    private static Object toReferenceId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
     }
 
     /**
-     * Удалить старые уведомления
+     * Удалить старые уведомления одним deleteMany по дате создания. Уведомления с истекшим сроком
+     * удаляет TTL-индекс, здесь остаются те, чей срок действия длиннее допустимого возраста.
      */
     public void deleteOldNotifications() {
         log.info("Удаление старых уведомлений");
@@ -133,12 +157,11 @@ public class NotificationService extends BaseService<Notification, String> {
         LocalDateTime cutoffDate = DateUtils.nowInMoscow()
             .minusDays(Constants.Limits.MAX_NOTIFICATION_AGE_DAYS);
         
-        List<Notification> oldNotifications = notificationRepository
-            .findByCreatedAtBefore(cutoffDate);
+        long deleted = notificationRepository.deleteByCreatedAtBefore(cutoffDate);
         
-        if (!oldNotifications.isEmpty()) {
-            notificationRepository.deleteAll(oldNotifications);
-            log.info("Удалено {} старых уведомлений", oldNotifications.size());
+        if (deleted > 0) {
+            unreadCounterService.invalidateAll(UnreadCounterService.Kind.NOTIFICATION);
+            log.info("Удалено {} старых уведомлений", deleted);
         }
     }
 
@@ -177,6 +200,49 @@ public class NotificationService extends BaseService<Notification, String> {
             appointmentId, "APPOINTMENT");
     }
 
+    /**
+     * Создать уведомление об освободившемся времени из листа ожидания
+     */
+    public CompletableFuture<Notification> createWaitlistNotification(
+            User user, 
+            String waitlistEntryId, 
+            String masterName, 
+            LocalDateTime slot) {
+        
+        String title = "Освободилось время для записи";
+        String message = String.format(
+            "У мастера %s освободилось время %s. Запишитесь, пока его не заняли", 
+            masterName, 
+            DateUtils.formatDateTime(slot)
+        );
+        
+        return createNotificationWithReference(user, NotificationType.SUCCESS, title, message, 
+            waitlistEntryId, "WAITLIST");
+    }
+
+    /**
+     * Создать напоминание о предстоящей записи
+     */
+    public CompletableFuture<Notification> createAppointmentReminderNotification(
+            User user, 
+            String appointmentId, 
+            String serviceName, 
+            LocalDateTime appointmentTime,
+            ReminderType reminderType) {
+        
+        String title = "Напоминание о записи";
+        String message = String.format(
+            reminderType == ReminderType.DAY_BEFORE
+                ? "Завтра в %s вы записаны на услугу '%s'"
+                : "Через 2 часа, в %s, вы записаны на услугу '%s'", 
+            DateUtils.formatTime(appointmentTime.toLocalTime()), 
+            serviceName
+        );
+        
+        return createNotificationWithReference(user, NotificationType.INFO, title, message, 
+            appointmentId, "APPOINTMENT");
+    }
+
     /**
      * Создать уведомление о новом заказе
      */
@@ -250,6 +316,8 @@ public class NotificationService extends BaseService<Notification, String> {
         
         notification.prePersist();
         Notification saved = save(notification);
+        unreadCounterService.increment(UnreadCounterService.Kind.NOTIFICATION, user.getId());
+        notificationStreamService.publish(saved);
         
         sendPushNotification(saved);
         
@@ -291,20 +359,24 @@ public class NotificationService extends BaseService<Notification, String> {
         }
         
         delete(notification);
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            unreadCounterService.add(UnreadCounterService.Kind.NOTIFICATION, user.getId(), -1);
+        }
     }
 
     /**
-     * Очистить истекшие уведомления
+     * Очистить истекшие уведомления одним deleteMany. Обычно их уже удалил TTL-индекс (фоновый проход
+     * MongoDB раз в минуту), метод дочищает то, что он еще не успел.
      */
     public void cleanupExpiredNotifications() {
         log.info("Очистка истекших уведомлений");
         
         LocalDateTime now = DateUtils.nowInMoscow();
-        List<Notification> expiredNotifications = notificationRepository.findByExpiresAtBefore(now);
+        long deleted = notificationRepository.deleteByExpiresAtBefore(now);
         
-        if (!expiredNotifications.isEmpty()) {
-            notificationRepository.deleteAll(expiredNotifications);
-            log.info("Удалено {} истекших уведомлений", expiredNotifications.size());
+        if (deleted > 0) {
+            unreadCounterService.invalidateAll(UnreadCounterService.Kind.NOTIFICATION);
+            log.info("Удалено {} истекших уведомлений", deleted);
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,298 @@
+package ru.supersto.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.supersto.dto.NotificationDTO;
+import ru.supersto.entity.Notification;
+import ru.supersto.entity.User;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Поток уведомлений по Server-Sent Events для клиентов без WebSocket.
+ * Реестр подписок хранится на узле; у каждой подписки своя ограниченная очередь, которую отправляет
+ * общий пул. Переполненная подписка закрывается: клиент переподключится с Last-Event-ID и дочитает
+ * пропущенное из MongoDB. Если пропущено больше, чем можно дослать, клиент получает событие resync
+ * и загружает список уведомлений заново.
+ */
+@Service
+@Slf4j
+public class NotificationStreamService {
+
+    private static final String EVENT_NAME = "notification";
+    private static final String RESYNC_EVENT_NAME = "resync";
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor executor;
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final int replayLimit;
+    private final long replayOverlapMs;
+
+    private final ConcurrentMap<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    public NotificationStreamService(MongoTemplate mongoTemplate,
+            @Qualifier("notificationStreamExecutor") Executor executor,
+            @Value("${app.notification.stream.timeout-ms:1800000}") long timeoutMs,
+            @Value("${app.notification.stream.buffer-size:100}") int bufferSize,
+            @Value("${app.notification.stream.replay-limit:100}") int replayLimit,
+            @Value("${app.notification.stream.replay-overlap-ms:5000}") long replayOverlapMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.executor = executor;
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+        this.replayLimit = replayLimit;
+        this.replayOverlapMs = replayOverlapMs;
+    }
+
+    /**
+     * Подписать пользователя на поток. При lastEventId сначала отправляются пропущенные уведомления.
+     */
+    public SseEmitter subscribe(User user, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(user.getId(), emitter, new ArrayBlockingQueue<>(bufferSize),
+                bufferSize + replayLimit);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(error -> unregister(subscriber));
+
+        // Подписка регистрируется до чтения пропущенного, поэтому ничего не теряется между запросом и
+        // подключением; повторы отсеиваются по ID при отправке
+        subscribers.computeIfAbsent(user.getId(), id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        List<NotificationDTO> missed = List.of();
+        boolean resync = false;
+        if (lastEventId != null && ObjectId.isValid(lastEventId)) {
+            missed = loadMissed(user.getId(), new ObjectId(lastEventId));
+            if (missed.size() > replayLimit) {
+                missed = List.of();
+                resync = true;
+            }
+        }
+        if (!subscriber.replay(missed, resync)) {
+            log.debug("Пользователю {} отправлено событие resync вместо пропущенных уведомлений", user.getEmail());
+        }
+        schedule(subscriber);
+
+        log.debug("Пользователь {} подписан на поток уведомлений", user.getEmail());
+        return emitter;
+    }
+
+    /**
+     * Отправить уведомление подключенным сессиям получателя на этом узле
+     */
+    public void publish(Notification notification) {
+        String userId = notification.getRecipient().getId();
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null || userSubscribers.isEmpty()) {
+            return;
+        }
+
+        NotificationDTO event = mapToDTO(notification, userId);
+        for (Subscriber subscriber : userSubscribers) {
+            if (subscriber.offer(event)) {
+                schedule(subscriber);
+            } else {
+                log.warn("Буфер потока уведомлений пользователя {} переполнен, подписка закрыта", userId);
+                subscriber.emitter.complete();
+                unregister(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Комментарий-пульс держит соединения открытыми через прокси и выявляет отключившихся клиентов
+     */
+    public int heartbeat() {
+        int alive = 0;
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                try {
+                    synchronized (subscriber) {
+                        subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    alive++;
+                } catch (IOException | IllegalStateException e) {
+                    unregister(subscriber);
+                }
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Уведомления после lastEventId. ID создаются на разных потоках и узлах и публикуются не строго
+     * по порядку, поэтому выборка начинается с перекрытием; повторы клиент отсеивает по ID события.
+     * Возвращается не больше replayLimit + 1 документов: лишний означает, что дослать все не получится.
+     */
+    private List<NotificationDTO> loadMissed(String userId, ObjectId lastEventId) {
+        Object recipientId = ObjectId.isValid(userId) ? new ObjectId(userId) : userId;
+        ObjectId from = ObjectId.getSmallestWithDate(
+                new Date(lastEventId.getDate().getTime() - replayOverlapMs));
+        Query query = Query.query(Criteria.where("recipient.id").is(recipientId)
+                        .and("id").gte(from).ne(lastEventId))
+                .with(Sort.by(Sort.Direction.ASC, "id"))
+                .limit(replayLimit + 1);
+        // Получатель известен, ссылку не разрешаем для каждого документа
+        query.fields().exclude("recipient");
+        return mongoTemplate.find(query, Notification.class).stream()
+                .map(notification -> mapToDTO(notification, userId))
+                .toList();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> drain(subscriber));
+        } catch (TaskRejectedException e) {
+            subscriber.draining.set(false);
+            log.warn("Пул отправки потоков уведомлений перегружен, подписка пользователя {} закрыта",
+                    subscriber.userId);
+            subscriber.emitter.complete();
+            unregister(subscriber);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            if (subscriber.resyncPending.compareAndSet(true, false)) {
+                synchronized (subscriber) {
+                    subscriber.emitter.send(SseEmitter.event().name(RESYNC_EVENT_NAME).data(RESYNC_EVENT_NAME));
+                }
+            }
+            NotificationDTO event;
+            while ((event = subscriber.buffer.poll()) != null) {
+                if (!subscriber.markSent(event.getId())) {
+                    continue;
+                }
+                synchronized (subscriber) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(event.getId())
+                            .name(EVENT_NAME)
+                            .data(event));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            unregister(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // Событие могло прийти между последней выборкой и снятием флага
+        if (!subscriber.buffer.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void unregister(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private NotificationDTO mapToDTO(Notification notification, String recipientId) {
+        return NotificationDTO.builder()
+                .id(notification.getId())
+                .recipientId(recipientId)
+                .type(notification.getType())
+                .title(notification.getTitle())
+                .message(notification.getMessage())
+                .isRead(notification.getIsRead())
+                .createdAt(notification.getCreatedAt())
+                .readAt(notification.getReadAt())
+                .expiresAt(notification.getExpiresAt())
+                .referenceId(notification.getReferenceId())
+                .referenceType(notification.getReferenceType())
+                .actionUrl(notification.getActionUrl())
+                .build();
+    }
+
+    private static final class Subscriber {
+
+        private final String userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<NotificationDTO> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        private final AtomicBoolean resyncPending = new AtomicBoolean();
+        private final Set<String> recentlySent;
+
+        private Subscriber(String userId, SseEmitter emitter, BlockingQueue<NotificationDTO> buffer,
+                int recentCapacity) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = buffer;
+            this.recentlySent = Collections.newSetFromMap(new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > recentCapacity;
+                }
+            });
+        }
+
+        boolean offer(NotificationDTO event) {
+            return buffer.offer(event);
+        }
+
+        /**
+         * Поставить пропущенные уведомления перед пришедшими за время чтения из базы и разрешить отправку.
+         * Если все не помещается в буфер, это переполнение: буфер очищается и клиенту уходит resync.
+         *
+         * @return false, если вместо пропущенных уведомлений будет отправлен resync
+         */
+        boolean replay(List<NotificationDTO> missed, boolean resync) {
+            List<NotificationDTO> arrived = new ArrayList<>();
+            buffer.drainTo(arrived);
+            TreeMap<ObjectId, NotificationDTO> ordered = new TreeMap<>(Comparator.naturalOrder());
+            missed.forEach(event -> ordered.put(new ObjectId(event.getId()), event));
+            arrived.forEach(event -> ordered.put(new ObjectId(event.getId()), event));
+
+            boolean overflow = false;
+            for (NotificationDTO event : ordered.values()) {
+                if (!buffer.offer(event)) {
+                    overflow = true;
+                    break;
+                }
+            }
+            if (overflow) {
+                buffer.clear();
+            }
+            resyncPending.set(resync || overflow);
+            draining.set(false);
+            return !resyncPending.get();
+        }
+
+        /**
+         * Отсеять повтор уже отправленного уведомления. Сравниваются ID последних отправленных, а не
+         * порядок ID: уведомления публикуются не строго в порядке создания.
+         */
+        synchronized boolean markSent(String eventId) {
+            return recentlySent.add(eventId);
+        }
+    }
+}
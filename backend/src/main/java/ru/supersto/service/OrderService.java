@@ -2,6 +2,12 @@ package ru.supersto.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import ru.supersto.dto.OrderDTO;
 import ru.supersto.dto.OrderItemDTO;
@@ -12,7 +18,11 @@ import ru.supersto.exception.ResourceNotFoundException;
 import ru.supersto.repository.OrderRepository;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,11 +33,15 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final UserService userService;
     private final ProductService productService;
+    private final InventoryReservationService inventoryReservationService;
+    private final NotificationService notificationService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.inventory.auto-cancel-expired:true}")
+    private boolean autoCancelExpired;
 
     public List<OrderDTO> getAllOrders() {
-        return orderRepository.findAll().stream()
-                .map(this::mapToOrderDTO)
-                .collect(Collectors.toList());
+        return mapToOrderDTOs(orderRepository.findAll());
     }
 
     public OrderDTO findById(String id) {
@@ -46,29 +60,25 @@ public class OrderService {
     }
 
     public List<OrderDTO> findByClientId(String clientId) {
-        return orderRepository.findByClientId(clientId).stream()
-                .map(this::mapToOrderDTO)
-                .collect(Collectors.toList());
+        return mapToOrderDTOs(orderRepository.findByClientId(clientId));
     }
 
     public List<OrderDTO> findByStatus(OrderStatus status) {
-        return orderRepository.findByStatus(status).stream()
-                .map(this::mapToOrderDTO)
-                .collect(Collectors.toList());
+        return mapToOrderDTOs(orderRepository.findByStatus(status));
     }
 
     public List<OrderDTO> findByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return orderRepository.findByDateRange(startDate, endDate).stream()
-                .map(this::mapToOrderDTO)
-                .collect(Collectors.toList());
+        return mapToOrderDTOs(orderRepository.findByDateRange(startDate, endDate));
     }
 
     public OrderDTO createOrder(OrderDTO orderDTO) {
         User currentUser = userService.getCurrentUser();
 
-        // Проверяем наличие товаров и создаем элементы заказа
+        // Резервируем все товары заказа одним пакетом и создаем элементы заказа
+        Map<String, Integer> quantities = sumQuantitiesByProduct(orderDTO.getItems());
+        Map<String, ProductDTO> reservedProducts = productService.reserveStock(quantities);
         List<OrderItem> orderItems = orderDTO.getItems().stream()
-                .map(this::createOrderItem)
+                .map(itemDTO -> createOrderItem(itemDTO, reservedProducts.get(itemDTO.getProductId())))
                 .collect(Collectors.toList());
 
         Order order = Order.builder()
@@ -82,10 +92,23 @@ public class OrderService {
 
         order.prePersist();
 
-        // Резервируем товары на складе
-        reserveProducts(orderItems);
+        // ID назначается заранее, чтобы резерв попал в журнал до сохранения заказа
+        order.setId(new ObjectId().toHexString());
+        try {
+            inventoryReservationService.hold(order.getId(), quantities);
+        } catch (RuntimeException e) {
+            productService.releaseStock(quantities);
+            throw e;
+        }
 
-        Order savedOrder = orderRepository.save(order);
+        Order savedOrder;
+        try {
+            savedOrder = orderRepository.save(order);
+        } catch (RuntimeException e) {
+            // Заказ не сохранился - снимаем резерв
+            returnProductsToStock(order);
+            throw e;
+        }
         log.info("Создан новый заказ: {} для клиента {}", savedOrder.getId(), currentUser.getEmail());
 
         return mapToOrderDTO(savedOrder);
@@ -117,16 +140,88 @@ public class OrderService {
                 break;
             case CANCELLED:
                 // Возвращаем товары на склад
-                returnProductsToStock(order.getItems());
+                if (oldStatus != OrderStatus.CANCELLED) {
+                    returnProductsToStock(order);
+                }
                 break;
         }
 
+        // Заказ, ушедший из PENDING в работу любым переходом, больше не теряет резерв по истечении срока
+        if (newStatus != OrderStatus.PENDING && newStatus != OrderStatus.CANCELLED) {
+            inventoryReservationService.confirm(id);
+        }
+
         Order updatedOrder = orderRepository.save(order);
         log.info("Статус заказа {} изменен с {} на {}", id, oldStatus, newStatus);
 
         return mapToOrderDTO(updatedOrder);
     }
 
+    /**
+     * Разобрать просроченные резервы товаров. Резерв заказа, ушедшего в работу, подтверждается; резерв
+     * отмененного или несохраненного заказа снимается. Неподтвержденный заказ отменяется с возвратом
+     * товаров; при выключенной app.inventory.auto-cancel-expired заказ остается, а товары возвращаются
+     * на склад с пометкой резерва EXPIRED. Каждый резерв разбирается один раз: после разбора он уже не HELD.
+     */
+    public int settleExpiredHolds() {
+        List<StockReservation> expired = inventoryReservationService.findExpiredHolds();
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Order> orders = orderRepository.findAllById(expired.stream()
+                        .map(StockReservation::getOrderId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+
+        int settled = 0;
+        for (StockReservation reservation : expired) {
+            Order order = orders.get(reservation.getOrderId());
+            if (order == null || order.getStatus() == OrderStatus.CANCELLED) {
+                if (inventoryReservationService.releaseHold(reservation.getId())) {
+                    settled++;
+                }
+            } else if (order.getStatus() != OrderStatus.PENDING) {
+                inventoryReservationService.confirm(order.getId());
+                settled++;
+            } else if (autoCancelExpired) {
+                if (cancelExpiredOrder(order)) {
+                    settled++;
+                }
+            } else if (inventoryReservationService.expireHold(reservation.getId())) {
+                log.warn("Заказ {} не подтвержден за срок резерва: товары возвращены на склад, заказ оставлен",
+                        order.getId());
+                settled++;
+            }
+        }
+
+        if (settled > 0) {
+            log.info("Разобрано {} просроченных резервов товаров", settled);
+        }
+        return settled;
+    }
+
+    /**
+     * Отменить заказ с истекшим резервом, если он все еще PENDING. Товары возвращаются на склад только
+     * после того, как отмена действительно применилась.
+     */
+    private boolean cancelExpiredOrder(Order order) {
+        boolean cancelled = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(order.getId()).and("status").is(OrderStatus.PENDING)),
+                Update.update("status", OrderStatus.CANCELLED),
+                Order.class).getMatchedCount() > 0;
+        if (!cancelled) {
+            return false;
+        }
+
+        returnProductsToStock(order);
+        log.info("Статус заказа {} изменен с {} на {}: истек срок резерва товаров",
+                order.getId(), OrderStatus.PENDING, OrderStatus.CANCELLED);
+        notificationService.createOrderStatusNotification(order.getClient(), order.getId(),
+                "Отменен (истек срок резерва товаров)");
+        return true;
+    }
+
     public void deleteOrder(String id) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Заказ не найден с ID: " + id));
@@ -137,7 +232,7 @@ public class OrderService {
 
         // Возвращаем товары на склад если заказ не отменен
         if (order.getStatus() != OrderStatus.CANCELLED) {
-            returnProductsToStock(order.getItems());
+            returnProductsToStock(order);
         }
 
         orderRepository.delete(order);
@@ -152,45 +247,25 @@ public class OrderService {
             throw new BusinessException("Можно добавлять товары только в заказы со статусом PENDING");
         }
 
-        OrderItem newItem = createOrderItem(itemDTO);
+        // Резервируем добавленный товар
+        Map<String, Integer> quantities = sumQuantitiesByProduct(List.of(itemDTO));
+        Map<String, ProductDTO> reservedProducts = productService.reserveStock(quantities);
+        inventoryReservationService.addItems(orderId, quantities);
+        OrderItem newItem = createOrderItem(itemDTO, reservedProducts.get(itemDTO.getProductId()));
         order.getItems().add(newItem);
         order.calculateTotalAmount();
 
-        // Резервируем добавленный товар
-        reserveProducts(List.of(newItem));
-
         Order updatedOrder = orderRepository.save(order);
         log.info("Добавлен товар в заказ {}: {} (количество: {})",
-                orderId, newItem.getProduct().getName(), newItem.getQuantity());
+                orderId, reservedProducts.get(itemDTO.getProductId()).getName(), newItem.getQuantity());
 
         return mapToOrderDTO(updatedOrder);
     }
 
-    private OrderItem createOrderItem(OrderItemDTO itemDTO) {
-        ProductDTO productDTO = productService.findById(itemDTO.getProductId());
-
-        // Проверяем наличие товара на складе
-        if (productDTO.getQuantity() < itemDTO.getQuantity()) {
-            throw new BusinessException(
-                    String.format("Недостаточно товара '%s' на складе. Доступно: %d, запрошено: %d",
-                            productDTO.getName(), productDTO.getQuantity(), itemDTO.getQuantity()));
-        }
-
-        // Создаем объект Product для OrderItem
-        Product product = Product.builder()
-                .id(productDTO.getId())
-                .name(productDTO.getName())
-                .description(productDTO.getDescription())
-                .price(productDTO.getPrice())
-                .quantity(productDTO.getQuantity())
-                .category(productDTO.getCategory())
-                .brand(productDTO.getBrand())
-                .partNumber(productDTO.getPartNumber())
-                .isActive(productDTO.getIsActive())
-                .build();
-
+    private OrderItem createOrderItem(OrderItemDTO itemDTO, ProductDTO productDTO) {
+        // В заказе хранится только ссылка на товар, данные для отображения берутся из каталога
         OrderItem orderItem = OrderItem.builder()
-                .product(product)
+                .product(Product.builder().id(productDTO.getId()).build())
                 .quantity(itemDTO.getQuantity())
                 .unitPrice(productDTO.getPrice())
                 .build();
@@ -199,21 +274,40 @@ public class OrderService {
         return orderItem;
     }
 
-    private void reserveProducts(List<OrderItem> items) {
-        for (OrderItem item : items) {
-            productService.decreaseStock(item.getProduct().getId(), item.getQuantity());
-        }
+    private Map<String, Integer> sumQuantitiesByProduct(List<OrderItemDTO> items) {
+        return items.stream()
+                .collect(Collectors.toMap(OrderItemDTO::getProductId, OrderItemDTO::getQuantity,
+                        Integer::sum, LinkedHashMap::new));
     }
 
-    private void returnProductsToStock(List<OrderItem> items) {
-        for (OrderItem item : items) {
-            productService.increaseStock(item.getProduct().getId(), item.getQuantity());
-        }
+    private void returnProductsToStock(Order order) {
+        inventoryReservationService.release(order.getId(), order.getItems().stream()
+                .collect(Collectors.toMap(OrderItem::resolveProductId, OrderItem::getQuantity,
+                        Integer::sum, LinkedHashMap::new)));
     }
 
     private OrderDTO mapToOrderDTO(Order order) {
+        return mapToOrderDTOs(List.of(order)).get(0);
+    }
+
+    /**
+     * Маппинг страницы заказов: все товары позиций загружаются одним запросом
+     */
+    private List<OrderDTO> mapToOrderDTOs(List<Order> orders) {
+        Set<String> productIds = orders.stream()
+                .flatMap(order -> order.getItems().stream())
+                .map(OrderItem::resolveProductId)
+                .collect(Collectors.toSet());
+        Map<String, ProductDTO> products = productService.findAllByIds(productIds);
+
+        return orders.stream()
+                .map(order -> mapToOrderDTO(order, products))
+                .collect(Collectors.toList());
+    }
+
+    private OrderDTO mapToOrderDTO(Order order, Map<String, ProductDTO> products) {
         List<OrderItemDTO> itemDTOs = order.getItems().stream()
-                .map(this::mapToOrderItemDTO)
+                .map(item -> mapToOrderItemDTO(item, products.get(item.resolveProductId())))
                 .collect(Collectors.toList());
 
         return OrderDTO.builder()
@@ -234,16 +328,17 @@ public class OrderService {
                 .build();
     }
 
-    private OrderItemDTO mapToOrderItemDTO(OrderItem item) {
+    private OrderItemDTO mapToOrderItemDTO(OrderItem item, ProductDTO product) {
+        // Товар мог быть удален из каталога - позиция заказа при этом сохраняется
         return OrderItemDTO.builder()
-                .productId(item.getProduct().getId())
+                .productId(item.resolveProductId())
                 .quantity(item.getQuantity())
                 .unitPrice(item.getUnitPrice())
                 .totalPrice(item.getTotalPrice())
-                .productName(item.getProduct().getName())
-                .productDescription(item.getProduct().getDescription())
-                .productPartNumber(item.getProduct().getPartNumber())
-                .productBrand(item.getProduct().getBrand())
+                .productName(product != null ? product.getName() : null)
+                .productDescription(product != null ? product.getDescription() : null)
+                .productPartNumber(product != null ? product.getPartNumber() : null)
+                .productBrand(product != null ? product.getBrand() : null)
                 .build();
     }
-}
\ No newline at end of file
+}
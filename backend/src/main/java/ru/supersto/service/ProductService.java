@@ -2,6 +2,7 @@ package ru.supersto.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.stereotype.Service;
 import ru.supersto.dto.ProductDTO;
 import ru.supersto.entity.Product;
@@ -9,11 +10,27 @@ import ru.supersto.entity.ProductCategory;
 import ru.supersto.exception.ResourceNotFoundException;
 import ru.supersto.exception.BusinessException;
 import ru.supersto.repository.ProductRepository;
+import ru.supersto.util.Constants;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,7 +39,14 @@ import java.util.stream.Collectors;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ResponseCacheService responseCacheService;
+    private final StockAvailabilityService stockAvailabilityService;
+    private final CacheManager cacheManager;
     private static final int LOW_STOCK_THRESHOLD = 10;
+    // Последние токены резервов в документе товара: по ним находятся позиции, списанные неудачным резервом
+    private static final String RESERVATION_TOKENS_FIELD = "reservation_tokens";
+    private static final int RESERVATION_TOKENS_KEPT = 20;
 
     @Cacheable(value = "products", key = "#productId")
     public ProductDTO findById(String productId) {
@@ -31,6 +55,35 @@ public class ProductService {
         return mapToProductDTO(product);
     }
 
+    /**
+     * Найти товары по набору ID: сначала из кэша, остальные одним запросом $in
+     */
+    public Map<String, ProductDTO> findAllByIds(Collection<String> productIds) {
+        Cache cache = cacheManager.getCache(Constants.Cache.PRODUCT_CACHE);
+        Map<String, ProductDTO> result = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+
+        for (String productId : productIds) {
+            ProductDTO cached = cache != null ? cache.get(productId, ProductDTO.class) : null;
+            if (cached != null) {
+                result.put(productId, cached);
+            } else {
+                missingIds.add(productId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            for (Product product : productRepository.findAllById(missingIds)) {
+                ProductDTO productDTO = mapToProductDTO(product);
+                result.put(product.getId(), productDTO);
+                if (cache != null) {
+                    cache.put(product.getId(), productDTO);
+                }
+            }
+        }
+        return result;
+    }
+
     @Cacheable(value = "products", key = "'all'")
     public List<ProductDTO> findAllActive() {
         List<Product> products = productRepository.findAllActive();
@@ -77,6 +130,10 @@ public class ProductService {
                 .collect(Collectors.toList());
     }
 
+    public int getAvailableQuantity(String productId) {
+        return stockAvailabilityService.getAvailable(productId);
+    }
+
     @CacheEvict(value = "products", allEntries = true)
     public ProductDTO createProduct(ProductDTO productDTO) {
         // Проверяем уникальность артикула
@@ -99,6 +156,8 @@ public class ProductService {
         product.prePersist();
         Product savedProduct = productRepository.save(product);
         log.info("Создан новый продукт: {} (артикул: {})", savedProduct.getName(), savedProduct.getPartNumber());
+        stockAvailabilityService.set(savedProduct.getId(), savedProduct.getQuantity());
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
 
         return mapToProductDTO(savedProduct);
     }
@@ -131,9 +190,12 @@ public class ProductService {
 
         Product updatedProduct = productRepository.save(existingProduct);
         log.info("Продукт {} обновлен", updatedProduct.getName());
+        stockAvailabilityService.set(updatedProduct.getId(), updatedProduct.getQuantity());
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
         return mapToProductDTO(updatedProduct);
     }
 
+    @CacheEvict(value = "products", allEntries = true)
     public ProductDTO updateStock(String id, int newQuantity) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Продукт не найден с ID: " + id));
@@ -143,38 +205,145 @@ public class ProductService {
 
         Product updatedProduct = productRepository.save(product);
         log.info("Количество продукта {} изменено с {} на {}", product.getName(), oldQuantity, newQuantity);
+        stockAvailabilityService.set(id, newQuantity);
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
 
         return mapToProductDTO(updatedProduct);
     }
 
+    @CacheEvict(value = "products", allEntries = true)
     public ProductDTO increaseStock(String id, int quantity) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Продукт не найден с ID: " + id));
+        validateStockDelta(quantity);
+
+        // Атомарный $inc без чтения и перезаписи всего документа
+        Query query = Query.query(Criteria.where("id").is(id));
+        Update update = new Update().inc("quantity", quantity);
+        Product updatedProduct = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+
+        if (updatedProduct == null) {
+            throw new ResourceNotFoundException("Продукт не найден с ID: " + id);
+        }
 
-        product.setQuantity(product.getQuantity() + quantity);
-        Product updatedProduct = productRepository.save(product);
         log.info("Количество продукта {} увеличено на {}. Текущее количество: {}",
-                product.getName(), quantity, updatedProduct.getQuantity());
+                updatedProduct.getName(), quantity, updatedProduct.getQuantity());
+        stockAvailabilityService.set(id, updatedProduct.getQuantity());
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
 
         return mapToProductDTO(updatedProduct);
     }
 
+    @CacheEvict(value = "products", allEntries = true)
     public ProductDTO decreaseStock(String id, int quantity) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Продукт не найден с ID: " + id));
+        validateStockDelta(quantity);
+
+        // Условное списание: документ изменится только при достаточном остатке
+        Query query = Query.query(Criteria.where("id").is(id).and("quantity").gte(quantity));
+        Update update = new Update().inc("quantity", -quantity);
+        Product updatedProduct = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
 
-        if (product.getQuantity() < quantity) {
+        if (updatedProduct == null) {
+            Product product = productRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Продукт не найден с ID: " + id));
             throw new BusinessException("Недостаточно товара на складе. Доступно: " + product.getQuantity());
         }
 
-        product.setQuantity(product.getQuantity() - quantity);
-        Product updatedProduct = productRepository.save(product);
         log.info("Количество продукта {} уменьшено на {}. Осталось: {}",
-                product.getName(), quantity, updatedProduct.getQuantity());
+                updatedProduct.getName(), quantity, updatedProduct.getQuantity());
+        stockAvailabilityService.set(id, updatedProduct.getQuantity());
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
 
         return mapToProductDTO(updatedProduct);
     }
 
+    /**
+     * Зарезервировать несколько товаров: одна выборка $in и один упорядоченный bulkWrite условных
+     * списаний {_id, quantity >= n} без upsert. Каждое списание помечает товар токеном резерва: если
+     * совпало меньше строк, чем заказано, списанные позиции находятся по токену и возвращаются на склад.
+     */
+    public Map<String, ProductDTO> reserveStock(Map<String, Integer> quantities) {
+        quantities.values().forEach(this::validateStockDelta);
+
+        // Быстрый отказ по счетчикам в памяти, без обращения к базе
+        quantities.forEach((productId, quantity) -> {
+            if (!stockAvailabilityService.isAvailable(productId, quantity)) {
+                throw new BusinessException("Недостаточно товара на складе. Доступно: "
+                        + stockAvailabilityService.getAvailable(productId));
+            }
+        });
+
+        Map<String, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<String> productIds = new ArrayList<>(quantities.keySet());
+        for (String productId : productIds) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ResourceNotFoundException("Товар не найден с ID: " + productId);
+            }
+            checkAvailability(product, quantities.get(productId));
+        }
+
+        String token = new ObjectId().toHexString();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Product.class);
+        for (String productId : productIds) {
+            int quantity = quantities.get(productId);
+            bulkOps.updateOne(Query.query(Criteria.where("id").is(productId).and("quantity").gte(quantity)),
+                    new Update().inc("quantity", -quantity)
+                            .push(RESERVATION_TOKENS_FIELD).slice(-RESERVATION_TOKENS_KEPT).each(token));
+        }
+
+        int matched;
+        try {
+            matched = bulkOps.execute().getMatchedCount();
+        } catch (RuntimeException e) {
+            // Неизвестно, какие списания применились: возвращаем найденные по токену
+            releaseStock(filterQuantities(quantities, findReservedBy(token, productIds)));
+            throw e;
+        }
+        if (matched < productIds.size()) {
+            Set<String> appliedIds = findReservedBy(token, productIds);
+            releaseStock(filterQuantities(quantities, appliedIds));
+            String failedId = productIds.stream()
+                    .filter(productId -> !appliedIds.contains(productId))
+                    .findFirst()
+                    .orElse(productIds.get(0));
+            throw reserveFailure(failedId, quantities.get(failedId));
+        }
+
+        log.info("Зарезервировано {} позиций товаров", productIds.size());
+        quantities.forEach((productId, quantity) -> stockAvailabilityService.adjust(productId, -quantity));
+        evictStock(productIds);
+
+        Map<String, ProductDTO> reserved = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            Product product = products.get(productId);
+            product.setQuantity(product.getQuantity() - quantities.get(productId));
+            reserved.put(productId, mapToProductDTO(product));
+        }
+        return reserved;
+    }
+
+    /**
+     * Вернуть несколько товаров на склад одним неупорядоченным bulkWrite
+     */
+    public void releaseStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantities.forEach((productId, quantity) -> bulkOps.updateOne(
+                Query.query(Criteria.where("id").is(productId)),
+                new Update().inc("quantity", quantity)));
+        bulkOps.execute();
+
+        log.info("Возвращено на склад {} позиций товаров", quantities.size());
+        quantities.forEach(stockAvailabilityService::adjust);
+        evictStock(quantities.keySet());
+    }
+
     public ProductDTO toggleProductStatus(String id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Продукт не найден с ID: " + id));
@@ -182,6 +351,7 @@ public class ProductService {
         product.setIsActive(!product.getIsActive());
         Product updatedProduct = productRepository.save(product);
         log.info("Статус продукта {} изменен на: {}", product.getName(), product.getIsActive());
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
         return mapToProductDTO(updatedProduct);
     }
 
@@ -191,6 +361,75 @@ public class ProductService {
 
         productRepository.delete(product);
         log.info("Продукт {} удален", product.getName());
+        stockAvailabilityService.remove(id);
+        responseCacheService.invalidate(ResponseCacheService.PRODUCTS_GROUP);
+    }
+
+    /**
+     * Товары, списание которых с токеном применилось
+     */
+    private Set<String> findReservedBy(String token, List<String> productIds) {
+        Query query = Query.query(Criteria.where("id").in(productIds).and(RESERVATION_TOKENS_FIELD).is(token));
+        query.fields().include("id");
+        return mongoTemplate.find(query, Product.class).stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private static Map<String, Integer> filterQuantities(Map<String, Integer> quantities, Set<String> productIds) {
+        Map<String, Integer> filtered = new LinkedHashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (productIds.contains(productId)) {
+                filtered.put(productId, quantity);
+            }
+        });
+        return filtered;
+    }
+
+    /**
+     * Причина несовпавшего списания: товар удален или остатка уже не хватает
+     */
+    private RuntimeException reserveFailure(String productId, int requested) {
+        Optional<Product> current = productRepository.findById(productId);
+        if (current.isEmpty()) {
+            return new ResourceNotFoundException("Товар не найден с ID: " + productId);
+        }
+        try {
+            checkAvailability(current.get(), requested);
+        } catch (BusinessException e) {
+            return e;
+        }
+        return new BusinessException("Не удалось зарезервировать товар: " + current.get().getName());
+    }
+
+    /**
+     * Сбросить кэши после изменения остатков: карточки затронутых товаров и списки, где показан остаток.
+     * Карточки остальных товаров остаются в кэше.
+     */
+    private void evictStock(Collection<String> productIds) {
+        Cache cache = cacheManager.getCache(Constants.Cache.PRODUCT_CACHE);
+        if (cache != null) {
+            productIds.forEach(cache::evict);
+            cache.evict("all");
+            for (ProductCategory category : ProductCategory.values()) {
+                cache.evict("category-" + category);
+            }
+        }
+        responseCacheService.invalidateProducts(productIds);
+    }
+
+    private void checkAvailability(Product product, int requested) {
+        if (product.getQuantity() < requested) {
+            throw new BusinessException(
+                    String.format("Недостаточно товара '%s' на складе. Доступно: %d, запрошено: %d",
+                            product.getName(), product.getQuantity(), requested));
+        }
+    }
+
+    private void validateStockDelta(int quantity) {
+        if (quantity <= 0) {
+            throw new BusinessException("Количество должно быть больше 0");
+        }
     }
 
     private ProductDTO mapToProductDTO(Product product) {
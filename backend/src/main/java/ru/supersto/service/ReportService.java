@@ -3,6 +3,7 @@ package ru.supersto.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.supersto.dto.ProductDTO;
 import ru.supersto.dto.reports.AppointmentReportDTO;
 import ru.supersto.dto.reports.OrderReportDTO;
 import ru.supersto.entity.*;
@@ -10,7 +11,9 @@ import ru.supersto.repository.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -56,9 +59,7 @@ public class ReportService {
     public List<OrderReportDTO> generateOrderReport(LocalDateTime startDate, LocalDateTime endDate) {
         List<Order> orders = orderRepository.findByDateRange(startDate, endDate);
 
-        return orders.stream()
-                .map(this::mapToOrderReport)
-                .collect(Collectors.toList());
+        return mapToOrderReports(orders);
     }
 
     public List<OrderReportDTO> generateOrderReportByStatus(OrderStatus status,
@@ -69,9 +70,7 @@ public class ReportService {
                 .filter(o -> o.getStatus() == status)
                 .collect(Collectors.toList());
 
-        return orders.stream()
-                .map(this::mapToOrderReport)
-                .collect(Collectors.toList());
+        return mapToOrderReports(orders);
     }
 
     public List<OrderReportDTO> generateClientOrderReport(String clientId,
@@ -79,9 +78,7 @@ public class ReportService {
             LocalDateTime endDate) {
         List<Order> orders = orderRepository.findByClientAndDateRange(clientId, startDate, endDate);
 
-        return orders.stream()
-                .map(this::mapToOrderReport)
-                .collect(Collectors.toList());
+        return mapToOrderReports(orders);
     }
 
     private AppointmentReportDTO mapToAppointmentReport(Appointment appointment) {
@@ -113,16 +110,32 @@ public class ReportService {
                 .build();
     }
 
-    private OrderReportDTO mapToOrderReport(Order order) {
+    private List<OrderReportDTO> mapToOrderReports(List<Order> orders) {
+        // Товары всех позиций отчета загружаются одним запросом
+        Set<String> productIds = orders.stream()
+                .flatMap(order -> order.getItems().stream())
+                .map(OrderItem::resolveProductId)
+                .collect(Collectors.toSet());
+        Map<String, ProductDTO> products = productService.findAllByIds(productIds);
+
+        return orders.stream()
+                .map(order -> mapToOrderReport(order, products))
+                .collect(Collectors.toList());
+    }
+
+    private OrderReportDTO mapToOrderReport(Order order, Map<String, ProductDTO> products) {
         List<OrderReportDTO.OrderItemReportDTO> itemReports = order.getItems().stream()
-                .map(item -> OrderReportDTO.OrderItemReportDTO.builder()
-                        .productName(item.getProduct().getName())
-                        .productPartNumber(item.getProduct().getPartNumber())
-                        .productBrand(item.getProduct().getBrand())
-                        .quantity(item.getQuantity())
-                        .unitPrice(item.getUnitPrice())
-                        .totalPrice(item.getTotalPrice())
-                        .build())
+                .map(item -> {
+                    ProductDTO product = products.get(item.resolveProductId());
+                    return OrderReportDTO.OrderItemReportDTO.builder()
+                            .productName(product != null ? product.getName() : null)
+                            .productPartNumber(product != null ? product.getPartNumber() : null)
+                            .productBrand(product != null ? product.getBrand() : null)
+                            .quantity(item.getQuantity())
+                            .unitPrice(item.getUnitPrice())
+                            .totalPrice(item.getTotalPrice())
+                            .build();
+                })
                 .collect(Collectors.toList());
 
         return OrderReportDTO.builder()
@@ -0,0 +1,168 @@
+package ru.supersto.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.supersto.util.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готовых (сериализованных) ответов для публичных GET-запросов каталога.
+ * Хранит байты тела ответа и, при достаточном размере, их gzip-версию.
+ * При заполнении вытесняется ответ, который дольше всех не запрашивали.
+ */
+@Service
+@Slf4j
+public class ResponseCacheService {
+
+    public static final String PRODUCTS_GROUP = "products";
+    public static final String SERVICES_GROUP = "services";
+
+    private static final String PRODUCTS_PREFIX = Constants.ApiPaths.API_PREFIX + Constants.ApiPaths.PRODUCTS;
+    private static final String SERVICES_PREFIX = Constants.ApiPaths.API_PREFIX + Constants.ApiPaths.SERVICES;
+
+    @Value("${app.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.response-cache.max-entries:500}")
+    private int maxEntries;
+
+    @Value("${app.response-cache.gzip-min-size:1024}")
+    private int gzipMinSize;
+
+    // Порядок доступа: первым вытесняется давно не запрашиваемый ответ. Доступ только под блокировкой entries
+    private final Map<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Определить группу кэша по пути запроса (null - путь не кэшируется)
+     */
+    public String resolveGroup(String path) {
+        if (!enabled || path == null) {
+            return null;
+        }
+        if (matchesPrefix(path, PRODUCTS_PREFIX)) {
+            return PRODUCTS_GROUP;
+        }
+        if (matchesPrefix(path, SERVICES_PREFIX)) {
+            return SERVICES_GROUP;
+        }
+        return null;
+    }
+
+    /**
+     * Текущее поколение группы. Ответ, собранный до инвалидации, не попадет в кэш.
+     */
+    public long currentGeneration(String group) {
+        return generations.computeIfAbsent(group, g -> new AtomicLong()).get();
+    }
+
+    public CachedResponse get(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Сохранить готовый ответ, если группа не была инвалидирована во время его формирования
+     */
+    public void put(String key, String group, long generation, String contentType, byte[] body) {
+        byte[] gzippedBody = body.length >= gzipMinSize ? gzip(body) : null;
+        CachedResponse cachedResponse = new CachedResponse(group, contentType, body, gzippedBody);
+
+        if (currentGeneration(group) != generation) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, cachedResponse);
+        }
+
+        // Инвалидация могла произойти между проверкой и вставкой
+        if (currentGeneration(group) != generation) {
+            synchronized (entries) {
+                entries.remove(key, cachedResponse);
+            }
+        }
+    }
+
+    /**
+     * Инвалидировать все ответы группы
+     */
+    public void invalidate(String group) {
+        generations.computeIfAbsent(group, g -> new AtomicLong()).incrementAndGet();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.group().equals(group));
+        }
+        log.debug("Кэш ответов группы {} инвалидирован", group);
+    }
+
+    /**
+     * Инвалидировать ответы после изменения остатков товаров: карточки перечисленных товаров и все
+     * списки группы. Карточки остальных товаров (/products/{id} и /products/{id}/availability) остаются.
+     */
+    public void invalidateProducts(Collection<String> productIds) {
+        generations.computeIfAbsent(PRODUCTS_GROUP, g -> new AtomicLong()).incrementAndGet();
+        synchronized (entries) {
+            entries.entrySet().removeIf(entry -> entry.getValue().group().equals(PRODUCTS_GROUP)
+                    && !isUnaffectedProductCard(entry.getKey(), productIds));
+        }
+        log.debug("Кэш ответов инвалидирован для {} товаров", productIds.size());
+    }
+
+    public void invalidateAll() {
+        List.of(PRODUCTS_GROUP, SERVICES_GROUP).forEach(this::invalidate);
+    }
+
+    /**
+     * Ключ имеет вид "роль путь?параметры" (см. ResponseCacheFilter)
+     */
+    private boolean isUnaffectedProductCard(String key, Collection<String> productIds) {
+        int pathStart = key.indexOf(' ') + 1;
+        int queryStart = key.indexOf('?', pathStart);
+        String path = key.substring(pathStart, queryStart < 0 ? key.length() : queryStart);
+        if (!path.startsWith(PRODUCTS_PREFIX + "/")) {
+            return false;
+        }
+
+        String[] segments = path.substring(PRODUCTS_PREFIX.length() + 1).split("/");
+        boolean card = segments.length == 1 || (segments.length == 2 && segments[1].equals("availability"));
+        return card && ObjectId.isValid(segments[0]) && !productIds.contains(segments[0]);
+    }
+
+    private boolean matchesPrefix(String path, String prefix) {
+        return path.equals(prefix) || path.startsWith(prefix + "/");
+    }
+
+    private byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException e) {
+            log.warn("Не удалось сжать ответ для кэша: {}", e.getMessage());
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Готовый к записи ответ
+     */
+    public record CachedResponse(String group, String contentType, byte[] body, byte[] gzippedBody) {
+    }
+}
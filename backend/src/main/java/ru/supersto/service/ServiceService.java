@@ -8,7 +8,11 @@ import ru.supersto.entity.ServiceCategory;
 import ru.supersto.exception.ResourceNotFoundException;
 import ru.supersto.repository.ServiceRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -16,6 +20,7 @@ import java.util.List;
 public class ServiceService {
 
     private final ServiceRepository serviceRepository;
+    private final ResponseCacheService responseCacheService;
 
     public List<ru.supersto.entity.Service> getAllActiveServices() {
         return serviceRepository.findAllActive();
@@ -26,6 +31,22 @@ public class ServiceService {
                 .orElseThrow(() -> new ResourceNotFoundException("Услуга не найдена с ID: " + id));
     }
 
+    /**
+     * Услуги по списку ID одним запросом
+     */
+    public Map<String, ru.supersto.entity.Service> findAllByIds(Collection<String> ids) {
+        return serviceRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(ru.supersto.entity.Service::getId, Function.identity()));
+    }
+
+    /**
+     * Длительности услуг в минутах одним запросом
+     */
+    public Map<String, Integer> findDurationsByIds(Collection<String> ids) {
+        return serviceRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(ru.supersto.entity.Service::getId, MasterAvailabilityService::durationOf));
+    }
+
     public List<ru.supersto.entity.Service> findByCategory(ServiceCategory category) {
         return serviceRepository.findActiveByCategoryCategory(category);
     }
@@ -51,6 +72,7 @@ public class ServiceService {
         service.prePersist();
         ru.supersto.entity.Service savedService = serviceRepository.save(service);
         log.info("Создана новая услуга: {}", savedService.getName());
+        responseCacheService.invalidate(ResponseCacheService.SERVICES_GROUP);
         return savedService;
     }
 
@@ -69,6 +91,7 @@ public class ServiceService {
 
         ru.supersto.entity.Service updatedService = serviceRepository.save(existingService);
         log.info("Услуга {} обновлена", updatedService.getName());
+        responseCacheService.invalidate(ResponseCacheService.SERVICES_GROUP);
         return updatedService;
     }
 
@@ -77,6 +100,7 @@ public class ServiceService {
         service.setIsActive(!service.getIsActive());
         ru.supersto.entity.Service updatedService = serviceRepository.save(service);
         log.info("Статус услуги {} изменен на: {}", service.getName(), service.getIsActive());
+        responseCacheService.invalidate(ResponseCacheService.SERVICES_GROUP);
         return updatedService;
     }
 
@@ -84,6 +108,7 @@ public class ServiceService {
         ru.supersto.entity.Service service = findById(id);
         serviceRepository.delete(service);
         log.info("Услуга {} удалена", service.getName());
+        responseCacheService.invalidate(ResponseCacheService.SERVICES_GROUP);
     }
 
     public ServiceDTO mapToServiceDTO(ru.supersto.entity.Service service) {
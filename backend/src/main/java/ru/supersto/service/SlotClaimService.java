@@ -0,0 +1,157 @@
+package ru.supersto.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.SlotClaim;
+import ru.supersto.exception.BusinessException;
+import ru.supersto.util.Constants;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Атомарный захват времени мастера через документы slot_claims.
+ * Проверка занятости в памяти отсекает явные конфликты, а гонки между запросами и узлами решает уникальный индекс.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlotClaimService {
+
+    private static final int SLOT_MINUTES = Constants.Scheduling.SLOT_MINUTES;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Захватить все слоты интервала услуги одной вставкой.
+     * Ошибка уникальности означает, что часть интервала уже занята другой записью.
+     */
+    public void claim(String masterId, LocalDateTime start, int durationMinutes, String appointmentId) {
+        try {
+            mongoTemplate.insert(buildClaims(masterId, start, durationMinutes, appointmentId), SlotClaim.class);
+        } catch (DuplicateKeyException e) {
+            // Упорядоченная вставка могла успеть записать часть слотов до конфликта
+            release(masterId, appointmentId);
+            log.debug("Конфликт захвата слотов мастера {} на {}", masterId, start);
+            throw new BusinessException("Мастер уже занят в указанное время");
+        }
+    }
+
+    /**
+     * Захватить слоты нескольких записей одной неупорядоченной вставкой.
+     * Ошибки уникальности сопоставляются с записями по индексам документов; слоты, успевшие
+     * записаться у отклоненных записей, освобождаются.
+     *
+     * @return ID записей, время которых уже занято
+     */
+    public Set<String> claimAll(List<ClaimRequest> requests) {
+        List<SlotClaim> claims = new ArrayList<>();
+        for (ClaimRequest request : requests) {
+            claims.addAll(buildClaims(request.masterId(), request.start(), request.durationMinutes(),
+                    request.appointmentId()));
+        }
+        if (claims.isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> rejected = new HashSet<>();
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotClaim.class)
+                    .insert(claims)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                rejected.add(claims.get(error.getIndex()).getAppointmentId());
+            }
+        } catch (RuntimeException e) {
+            // Неизвестно, что успело записаться: снимаем все захваты пакета
+            requests.forEach(request -> release(request.masterId(), request.appointmentId()));
+            throw e;
+        }
+
+        rejected.forEach(this::release);
+        if (!rejected.isEmpty()) {
+            log.debug("Конфликт захвата слотов у {} записей пакета", rejected.size());
+        }
+        return rejected;
+    }
+
+    /**
+     * Захватить слоты уже сохраненных записей одной неупорядоченной вставкой.
+     * Записи созданы до появления захватов и уже приняты, поэтому конфликты не отклоняют их:
+     * занятый слот остается за первой записью, остальные слоты записываются как есть.
+     *
+     * @return число записанных слотов
+     */
+    public long claimExisting(List<ClaimRequest> requests) {
+        List<SlotClaim> claims = new ArrayList<>();
+        for (ClaimRequest request : requests) {
+            claims.addAll(buildClaims(request.masterId(), request.start(), request.durationMinutes(),
+                    request.appointmentId()));
+        }
+        if (claims.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SlotClaim.class)
+                    .insert(claims)
+                    .execute()
+                    .getInsertedCount();
+        } catch (BulkOperationException e) {
+            log.warn("Пересекающиеся записи: не захвачено {} слотов из {}", e.getErrors().size(), claims.size());
+            return e.getResult().getInsertedCount();
+        }
+    }
+
+    /**
+     * Освободить слоты записи у всех мастеров
+     */
+    public void release(String appointmentId) {
+        mongoTemplate.remove(Query.query(Criteria.where("appointmentId").is(appointmentId)), SlotClaim.class);
+    }
+
+    /**
+     * Освободить слоты записи у конкретного мастера
+     */
+    public void release(String masterId, String appointmentId) {
+        mongoTemplate.remove(Query.query(Criteria.where("appointmentId").is(appointmentId)
+                .and("masterId").is(masterId)), SlotClaim.class);
+    }
+
+    private List<SlotClaim> buildClaims(String masterId, LocalDateTime start, int durationMinutes,
+            String appointmentId) {
+        LocalDateTime dayStart = start.truncatedTo(ChronoUnit.DAYS);
+        long firstSlot = ChronoUnit.MINUTES.between(dayStart, start) / SLOT_MINUTES;
+        long lastSlot = (ChronoUnit.MINUTES.between(dayStart, start) + durationMinutes + SLOT_MINUTES - 1)
+                / SLOT_MINUTES;
+
+        List<SlotClaim> claims = new ArrayList<>();
+        for (long slot = firstSlot; slot < Math.max(lastSlot, firstSlot + 1); slot++) {
+            claims.add(SlotClaim.builder()
+                    .masterId(masterId)
+                    .slotStart(dayStart.plusMinutes(slot * SLOT_MINUTES))
+                    .appointmentId(appointmentId)
+                    .build());
+        }
+        return claims;
+    }
+
+    /**
+     * Интервал, который нужно захватить для записи
+     */
+    public record ClaimRequest(String masterId, LocalDateTime start, int durationMinutes, String appointmentId) {
+    }
+}
@@ -0,0 +1,201 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.supersto.dto.AvailableSlotDTO;
+import ru.supersto.dto.CombinedSlotOptionDTO;
+import ru.supersto.entity.User;
+import ru.supersto.entity.UserRole;
+import ru.supersto.exception.BusinessException;
+import ru.supersto.exception.ResourceNotFoundException;
+import ru.supersto.util.Constants;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск ближайших свободных слотов услуги сразу по всем мастерам
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlotSearchService {
+
+    private static final int MAX_RESULTS = 50;
+
+    private final UserService userService;
+    private final ServiceService serviceService;
+    private final MasterAvailabilityService masterAvailabilityService;
+    private final WorkingHoursService workingHoursService;
+
+    @Value("${app.scheduling.slot-step-minutes:60}")
+    private int slotStepMinutes;
+
+    @Value("${app.scheduling.search-timeout-ms:2000}")
+    private long searchTimeoutMs;
+
+    /**
+     * Ближайшие свободные слоты услуги у активных мастеров, выполняющих ее категорию.
+     * Занятость мастеров загружается одним запросом, дальше мастера просматриваются по очереди в памяти:
+     * поиск по битовой карте дешевле передачи задач в пул. Мастера, до которых поиск не дошел за
+     * отведенное время, в результат не попадают.
+     */
+    public List<AvailableSlotDTO> findNextAvailable(String serviceId, LocalDateTime from, int days, int limit) {
+        if (days < 1 || days > Constants.Limits.MAX_APPOINTMENT_ADVANCE_DAYS) {
+            throw new BusinessException("Период поиска должен быть от 1 до "
+                    + Constants.Limits.MAX_APPOINTMENT_ADVANCE_DAYS + " дней");
+        }
+        int resultLimit = Math.max(1, Math.min(limit, MAX_RESULTS));
+
+        ru.supersto.entity.Service service = serviceService.findById(serviceId);
+        int duration = MasterAvailabilityService.durationOf(service);
+        LocalDateTime start = from != null && from.isAfter(LocalDateTime.now()) ? from : LocalDateTime.now();
+
+        List<User> masters = userService.findByRole(UserRole.MASTER).stream()
+                .filter(master -> master.canPerform(service.getCategory()))
+                .collect(Collectors.toList());
+        if (masters.isEmpty()) {
+            return List.of();
+        }
+        masterAvailabilityService.preload(
+                masters.stream().map(User::getId).collect(Collectors.toList()),
+                start.toLocalDate(), start.toLocalDate().plusDays(days));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchTimeoutMs);
+        List<AvailableSlotDTO> slots = new ArrayList<>();
+        int searched = 0;
+        for (User master : masters) {
+            if (System.nanoTime() > deadline) {
+                log.warn("Поиск свободных слотов для услуги {} завершен не полностью: просмотрено {} мастеров из {}",
+                        serviceId, searched, masters.size());
+                break;
+            }
+            slots.addAll(searchMaster(master, serviceId, duration, start, days, resultLimit));
+            searched++;
+        }
+
+        return slots.stream()
+                .sorted(Comparator.comparing(AvailableSlotDTO::getStart)
+                        .thenComparing(AvailableSlotDTO::getMasterId))
+                .limit(resultLimit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Варианты записи на несколько услуг подряд к одному мастеру.
+     * У каждого мастера с нужными специализациями перебираются свободные промежутки дня: подходит
+     * промежуток не короче суммарной длительности. Варианты ранжируются по времени начала, затем по
+     * наименьшему остатку промежутка, чтобы комплекс меньше дробил расписание мастера.
+     */
+    public List<CombinedSlotOptionDTO> findCombinedOptions(List<String> serviceIds, LocalDate date, int days,
+            int limit) {
+        if (days < 1 || days > Constants.Limits.MAX_APPOINTMENT_ADVANCE_DAYS) {
+            throw new BusinessException("Период поиска должен быть от 1 до "
+                    + Constants.Limits.MAX_APPOINTMENT_ADVANCE_DAYS + " дней");
+        }
+        int resultLimit = Math.max(1, Math.min(limit, MAX_RESULTS));
+
+        Map<String, ru.supersto.entity.Service> services = serviceService.findAllByIds(serviceIds);
+        serviceIds.stream()
+                .filter(serviceId -> !services.containsKey(serviceId))
+                .findFirst()
+                .ifPresent(serviceId -> {
+                    throw new ResourceNotFoundException("Услуга не найдена с ID: " + serviceId);
+                });
+        int totalDuration = serviceIds.stream()
+                .mapToInt(serviceId -> MasterAvailabilityService.durationOf(services.get(serviceId)))
+                .sum();
+
+        List<User> masters = userService.findByRole(UserRole.MASTER).stream()
+                .filter(master -> services.values().stream()
+                        .allMatch(service -> master.canPerform(service.getCategory())))
+                .collect(Collectors.toList());
+        if (masters.isEmpty()) {
+            return List.of();
+        }
+        masterAvailabilityService.preload(masters.stream().map(User::getId).collect(Collectors.toList()),
+                date, date.plusDays(days));
+
+        LocalDateTime earliest = ceilToSlot(LocalDateTime.now());
+        List<CombinedSlotOptionDTO> options = new ArrayList<>();
+        for (User master : masters) {
+            for (int day = 0; day < days; day++) {
+                LocalDate current = date.plusDays(day);
+                WorkingHoursService.DayTemplate workingDay = workingHoursService.getDayTemplate(current);
+                if (workingDay == null) {
+                    continue;
+                }
+                for (MasterAvailabilityService.FreeGap gap : masterAvailabilityService.findFreeGaps(
+                        master.getId(), current, workingDay.open(), workingDay.close())) {
+                    LocalDateTime start = gap.start().isBefore(earliest) ? earliest : gap.start();
+                    long available = ChronoUnit.MINUTES.between(start, gap.end());
+                    if (available < totalDuration) {
+                        continue;
+                    }
+                    options.add(CombinedSlotOptionDTO.builder()
+                            .masterId(master.getId())
+                            .masterName(master.getFirstName() + " " + master.getLastName())
+                            .serviceIds(serviceIds)
+                            .start(start)
+                            .end(start.plusMinutes(totalDuration))
+                            .totalDuration(totalDuration)
+                            .idleMinutes((int) (available - totalDuration))
+                            .build());
+                }
+            }
+        }
+
+        return options.stream()
+                .sorted(Comparator.comparing(CombinedSlotOptionDTO::getStart)
+                        .thenComparingInt(CombinedSlotOptionDTO::getIdleMinutes)
+                        .thenComparing(CombinedSlotOptionDTO::getMasterId))
+                .limit(resultLimit)
+                .collect(Collectors.toList());
+    }
+
+    private LocalDateTime ceilToSlot(LocalDateTime dateTime) {
+        LocalDateTime minutes = dateTime.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        int remainder = minutes.getMinute() % Constants.Scheduling.SLOT_MINUTES;
+        return remainder == 0 ? minutes : minutes.plusMinutes(Constants.Scheduling.SLOT_MINUTES - remainder);
+    }
+
+    private List<AvailableSlotDTO> searchMaster(User master, String serviceId, int duration,
+            LocalDateTime from, int days, int limit) {
+        List<AvailableSlotDTO> slots = new ArrayList<>();
+        String masterName = master.getFirstName() + " " + master.getLastName();
+
+        for (int day = 0; day < days && slots.size() < limit; day++) {
+            LocalDate date = from.toLocalDate().plusDays(day);
+            WorkingHoursService.DayTemplate workingDay = workingHoursService.getDayTemplate(date);
+            if (workingDay == null) {
+                continue;
+            }
+            for (LocalDateTime slot : masterAvailabilityService.findFreeSlots(master.getId(), date, duration,
+                    workingDay.open(), workingDay.close(), slotStepMinutes)) {
+                if (!slot.isAfter(from)) {
+                    continue;
+                }
+                slots.add(AvailableSlotDTO.builder()
+                        .masterId(master.getId())
+                        .masterName(masterName)
+                        .serviceId(serviceId)
+                        .start(slot)
+                        .end(slot.plusMinutes(duration))
+                        .build());
+                if (slots.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return slots;
+    }
+}
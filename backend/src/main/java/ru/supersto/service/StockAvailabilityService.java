@@ -0,0 +1,103 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.Product;
+import ru.supersto.exception.ResourceNotFoundException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счетчики доступного остатка по каждому товару в памяти.
+ * Обновляются при каждом изменении склада и периодически сверяются с MongoDB.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockAvailabilityService {
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ConcurrentMap<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Доступный остаток товара. Запрос к базе выполняется только для еще не загруженного товара;
+     * для несуществующего товара счетчик не создается.
+     */
+    public int getAvailable(String productId) {
+        AtomicInteger counter = counters.get(productId);
+        if (counter == null) {
+            AtomicInteger loaded = loadCounter(productId);
+            counter = counters.putIfAbsent(productId, loaded);
+            if (counter == null) {
+                counter = loaded;
+            }
+        }
+        return counter.get();
+    }
+
+    public boolean isAvailable(String productId, int quantity) {
+        return getAvailable(productId) >= quantity;
+    }
+
+    public void set(String productId, int quantity) {
+        counters.computeIfAbsent(productId, id -> new AtomicInteger()).set(quantity);
+    }
+
+    public void adjust(String productId, int delta) {
+        AtomicInteger counter = counters.get(productId);
+        // Незагруженный счетчик будет прочитан из базы при первом обращении
+        if (counter != null) {
+            counter.addAndGet(delta);
+        }
+    }
+
+    public void remove(String productId) {
+        counters.remove(productId);
+    }
+
+    /**
+     * Сверить счетчики с фактическими остатками в MongoDB
+     */
+    public int reconcile() {
+        Query query = new Query();
+        query.fields().include("quantity");
+        List<Product> products = mongoTemplate.find(query, Product.class);
+
+        Set<String> productIds = new HashSet<>();
+        int corrected = 0;
+        for (Product product : products) {
+            productIds.add(product.getId());
+            int actual = product.getQuantity() != null ? product.getQuantity() : 0;
+            AtomicInteger counter = counters.computeIfAbsent(product.getId(), id -> new AtomicInteger(actual));
+            if (counter.getAndSet(actual) != actual) {
+                corrected++;
+            }
+        }
+        counters.keySet().retainAll(productIds);
+
+        if (corrected > 0) {
+            log.info("Сверка остатков: исправлено {} счетчиков из {}", corrected, productIds.size());
+        }
+        return corrected;
+    }
+
+    private AtomicInteger loadCounter(String productId) {
+        Query query = Query.query(Criteria.where("id").is(productId));
+        query.fields().include("quantity");
+        Product product = mongoTemplate.findOne(query, Product.class);
+        if (product == null) {
+            throw new ResourceNotFoundException("Товар не найден с ID: " + productId);
+        }
+        return new AtomicInteger(product.getQuantity() != null ? product.getQuantity() : 0);
+    }
+}
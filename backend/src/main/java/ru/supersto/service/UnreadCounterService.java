@@ -0,0 +1,160 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.ChatMessage;
+import ru.supersto.entity.Notification;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики непрочитанных сообщений чата и уведомлений в памяти узла.
+ * Счетчик пользователя загружается одним подсчетом при первом запросе, дальше меняется при отправке,
+ * создании и прочтении. Подсчет выполняется вне блокировок карты счетчиков. Изменения с других узлов и пропущенные события исправляет периодическая сверка
+ * с MongoDB; счетчики, которые давно не запрашивали, при сверке удаляются.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UnreadCounterService {
+
+    public enum Kind {
+        CHAT, // Сообщения чата
+        NOTIFICATION // Уведомления
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.unread.idle-eviction-ms:1800000}")
+    private long idleEvictionMs;
+
+    private final Map<Kind, ConcurrentMap<String, Counter>> counters = createCounters();
+
+    /**
+     * Число непрочитанных пользователя
+     */
+    public long get(Kind kind, String userId) {
+        ConcurrentMap<String, Counter> byUser = counters.get(kind);
+        Counter counter = byUser.get(userId);
+        if (counter == null) {
+            Counter created = new Counter(System.currentTimeMillis());
+            counter = byUser.putIfAbsent(userId, created);
+            if (counter == null) {
+                counter = created;
+                load(kind, userId, created);
+            }
+        }
+        counter.lastReadAt = System.currentTimeMillis();
+        // Счетчик загружает другой запрос: до конца загрузки отвечает база
+        return Math.max(0, counter.loaded ? counter.value.get() : count(kind, userId));
+    }
+
+    /**
+     * Изменить счетчик после записи в базу. Незагруженный счетчик не создается: он будет прочитан из базы
+     * уже с учетом изменения. Изменения во время загрузки копятся в счетчике и сохраняются после нее.
+     */
+    public void add(Kind kind, String userId, long delta) {
+        if (userId == null || delta == 0) {
+            return;
+        }
+        Counter counter = counters.get(kind).get(userId);
+        if (counter != null) {
+            counter.value.addAndGet(delta);
+        }
+    }
+
+    public void increment(Kind kind, String userId) {
+        add(kind, userId, 1);
+    }
+
+    /**
+     * Сбросить счетчики вида после массового удаления документов
+     */
+    public void invalidateAll(Kind kind) {
+        counters.get(kind).clear();
+    }
+
+    /**
+     * Сверить загруженные счетчики с базой и удалить давно не запрашиваемые.
+     * Вместо поправки к старому значению на место счетчика ставится новый, загруженный заново: изменения,
+     * пришедшие во время подсчета, попадают в новый счетчик и не теряются.
+     */
+    public int reconcile() {
+        long idleBefore = System.currentTimeMillis() - idleEvictionMs;
+        int reconciled = 0;
+        for (Kind kind : Kind.values()) {
+            ConcurrentMap<String, Counter> byUser = counters.get(kind);
+            byUser.entrySet().removeIf(entry -> entry.getValue().lastReadAt < idleBefore);
+            for (Map.Entry<String, Counter> entry : byUser.entrySet()) {
+                Counter current = entry.getValue();
+                if (!current.loaded) {
+                    continue;
+                }
+                Counter fresh = new Counter(current.lastReadAt);
+                if (!byUser.replace(entry.getKey(), current, fresh)) {
+                    continue;
+                }
+                load(kind, entry.getKey(), fresh);
+                if (fresh.loaded && fresh.value.get() != current.value.get()) {
+                    reconciled++;
+                }
+            }
+        }
+        if (reconciled > 0) {
+            log.debug("Исправлено {} счетчиков непрочитанных", reconciled);
+        }
+        return reconciled;
+    }
+
+    /**
+     * Загрузить счетчик, уже поставленный в карту. Подсчет идет вне блокировок карты; изменения, пришедшие
+     * до начала подсчета, уже учтены в базе и отбрасываются, пришедшие после - прибавляются к результату.
+     */
+    private void load(Kind kind, String userId, Counter counter) {
+        counter.value.getAndSet(0);
+        long actual;
+        try {
+            actual = count(kind, userId);
+        } catch (RuntimeException e) {
+            counters.get(kind).remove(userId, counter);
+            throw e;
+        }
+        counter.value.addAndGet(actual);
+        counter.loaded = true;
+    }
+
+    private long count(Kind kind, String userId) {
+        Object recipientId = ObjectId.isValid(userId) ? new ObjectId(userId) : userId;
+        Query query = Query.query(Criteria.where("recipient.id").is(recipientId).and("isRead").is(false));
+        return mongoTemplate.count(query, kind == Kind.CHAT ? ChatMessage.class : Notification.class);
+    }
+
+    private static Map<Kind, ConcurrentMap<String, Counter>> createCounters() {
+        Map<Kind, ConcurrentMap<String, Counter>> byKind = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            byKind.put(kind, new ConcurrentHashMap<>());
+        }
+        return byKind;
+    }
+
+    private static final class Counter {
+
+        private final AtomicLong value = new AtomicLong();
+        private volatile boolean loaded;
+        private volatile long lastReadAt;
+
+        private Counter(long lastReadAt) {
+            this.lastReadAt = lastReadAt;
+        }
+    }
+}
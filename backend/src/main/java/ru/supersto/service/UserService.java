@@ -12,7 +12,11 @@ import ru.supersto.entity.UserRole;
 import ru.supersto.exception.ResourceNotFoundException;
 import ru.supersto.repository.UserRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -58,6 +62,14 @@ public class UserService extends BaseService<User, String> {
         return findByIdOrThrow(id);
     }
 
+    /**
+     * Пользователи по списку ID одним запросом
+     */
+    public Map<String, User> findAllByIds(Collection<String> ids) {
+        return userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+
     public List<User> findAllActive() {
         return userRepository.findAllActive();
     }
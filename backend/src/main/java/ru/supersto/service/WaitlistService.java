@@ -0,0 +1,213 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import ru.supersto.dto.WaitlistEntryDTO;
+import ru.supersto.entity.LoyaltyLevel;
+import ru.supersto.entity.User;
+import ru.supersto.entity.UserRole;
+import ru.supersto.entity.WaitlistEntry;
+import ru.supersto.entity.WaitlistStatus;
+import ru.supersto.exception.BusinessException;
+import ru.supersto.exception.ResourceNotFoundException;
+import ru.supersto.repository.WaitlistEntryRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Лист ожидания к мастеру на день.
+ * Заявки каждого дня мастера хранятся в очереди с приоритетом по уровню лояльности и времени заявки;
+ * освободившееся при отмене время сразу предлагается первой подходящей заявке.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WaitlistService {
+
+    private static final Comparator<WaitlistEntry> PRIORITY = Comparator
+            .comparing(WaitlistEntry::getLoyaltyLevel, Comparator.reverseOrder())
+            .thenComparing(WaitlistEntry::getCreatedAt);
+
+    private final WaitlistEntryRepository waitlistEntryRepository;
+    private final MongoTemplate mongoTemplate;
+    private final UserService userService;
+    private final ServiceService serviceService;
+    private final MasterAvailabilityService masterAvailabilityService;
+    private final WorkingHoursService workingHoursService;
+    private final NotificationService notificationService;
+
+    private final ConcurrentMap<QueueKey, PriorityQueue<WaitlistEntry>> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Встать в лист ожидания к мастеру на день
+     */
+    public WaitlistEntryDTO join(WaitlistEntryDTO entryDTO) {
+        User client = userService.getCurrentUser();
+        User master = userService.getUserById(entryDTO.getMasterId());
+        if (master.getRole() != UserRole.MASTER) {
+            throw new BusinessException("Пользователь не является мастером");
+        }
+        ru.supersto.entity.Service service = serviceService.findById(entryDTO.getServiceId());
+
+        WaitlistEntry entry = WaitlistEntry.builder()
+                .clientId(client.getId())
+                .masterId(master.getId())
+                .serviceId(service.getId())
+                .desiredDate(entryDTO.getDesiredDate())
+                .durationMinutes(MasterAvailabilityService.durationOf(service))
+                .loyaltyLevel(client.getLoyaltyLevel() != null ? client.getLoyaltyLevel() : LoyaltyLevel.BRONZE)
+                .status(WaitlistStatus.WAITING)
+                .build();
+
+        entry.prePersist();
+        WaitlistEntry saved = waitlistEntryRepository.save(entry);
+
+        PriorityQueue<WaitlistEntry> queue = queues.get(QueueKey.of(saved));
+        // Незагруженная очередь будет прочитана из базы при первом освобождении времени
+        if (queue != null) {
+            synchronized (queue) {
+                queue.add(saved);
+            }
+        }
+
+        log.info("Клиент {} встал в лист ожидания к мастеру {} на {}",
+                client.getEmail(), master.getEmail(), saved.getDesiredDate());
+        return mapToDTO(saved);
+    }
+
+    public List<WaitlistEntryDTO> getMyEntries() {
+        return waitlistEntryRepository.findByClientIdOrderByCreatedAtDesc(userService.getCurrentUser().getId())
+                .stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Покинуть лист ожидания
+     */
+    public void leave(String entryId) {
+        WaitlistEntry entry = waitlistEntryRepository.findById(entryId)
+                .orElseThrow(() -> new ResourceNotFoundException("Заявка в листе ожидания не найдена с ID: " + entryId));
+
+        User currentUser = userService.getCurrentUser();
+        if (currentUser.getRole() != UserRole.ADMIN && !entry.getClientId().equals(currentUser.getId())) {
+            throw new BusinessException("Заявка принадлежит другому клиенту");
+        }
+
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(entryId).and("status").is(WaitlistStatus.WAITING)),
+                Update.update("status", WaitlistStatus.CANCELLED),
+                WaitlistEntry.class);
+
+        PriorityQueue<WaitlistEntry> queue = queues.get(QueueKey.of(entry));
+        if (queue != null) {
+            synchronized (queue) {
+                queue.removeIf(waiting -> waiting.getId().equals(entryId));
+            }
+        }
+    }
+
+    /**
+     * Предложить освободившееся у мастера время первой подходящей заявке.
+     * Заявки, чья услуга не помещается в освободившийся интервал, остаются в очереди.
+     */
+    public void onSlotFreed(String masterId, LocalDateTime freedStart) {
+        if (masterId == null || freedStart == null || !freedStart.isAfter(LocalDateTime.now())) {
+            return;
+        }
+
+        PriorityQueue<WaitlistEntry> queue = queues.computeIfAbsent(
+                new QueueKey(masterId, freedStart.toLocalDate()), this::loadQueue);
+
+        synchronized (queue) {
+            List<WaitlistEntry> skipped = new ArrayList<>();
+            try {
+                while (!queue.isEmpty()) {
+                    WaitlistEntry entry = queue.poll();
+                    int duration = entry.getDurationMinutes();
+                    if (!workingHoursService.isWorkingTime(freedStart, duration)
+                            || !masterAvailabilityService.isFree(masterId, freedStart, duration)) {
+                        skipped.add(entry);
+                        continue;
+                    }
+                    // Заявка, уже обработанная на другом узле или отмененная, просто покидает очередь
+                    if (markNotified(entry, freedStart)) {
+                        notifyClient(entry, freedStart);
+                        return;
+                    }
+                }
+            } finally {
+                queue.addAll(skipped);
+            }
+        }
+    }
+
+    /**
+     * Закрыть заявки на прошедшие дни
+     */
+    public long expireBefore(LocalDate date) {
+        queues.keySet().removeIf(key -> key.date().isBefore(date));
+        return mongoTemplate.updateMulti(
+                Query.query(Criteria.where("status").is(WaitlistStatus.WAITING).and("desiredDate").lt(date)),
+                Update.update("status", WaitlistStatus.EXPIRED),
+                WaitlistEntry.class).getModifiedCount();
+    }
+
+    private boolean markNotified(WaitlistEntry entry, LocalDateTime slot) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("id").is(entry.getId()).and("status").is(WaitlistStatus.WAITING)),
+                new Update()
+                        .set("status", WaitlistStatus.NOTIFIED)
+                        .set("offeredSlot", slot)
+                        .set("notifiedAt", LocalDateTime.now()),
+                WaitlistEntry.class).getModifiedCount() > 0;
+    }
+
+    private void notifyClient(WaitlistEntry entry, LocalDateTime slot) {
+        User client = userService.getUserById(entry.getClientId());
+        User master = userService.getUserById(entry.getMasterId());
+        notificationService.createWaitlistNotification(client, entry.getId(),
+                master.getFirstName() + " " + master.getLastName(), slot);
+        log.info("Клиенту {} предложено освободившееся время {} у мастера {}",
+                client.getEmail(), slot, master.getEmail());
+    }
+
+    private PriorityQueue<WaitlistEntry> loadQueue(QueueKey key) {
+        PriorityQueue<WaitlistEntry> queue = new PriorityQueue<>(PRIORITY);
+        queue.addAll(waitlistEntryRepository.findByMasterIdAndDesiredDateAndStatus(
+                key.masterId(), key.date(), WaitlistStatus.WAITING));
+        return queue;
+    }
+
+    private WaitlistEntryDTO mapToDTO(WaitlistEntry entry) {
+        return WaitlistEntryDTO.builder()
+                .id(entry.getId())
+                .masterId(entry.getMasterId())
+                .serviceId(entry.getServiceId())
+                .desiredDate(entry.getDesiredDate())
+                .status(entry.getStatus())
+                .offeredSlot(entry.getOfferedSlot())
+                .createdAt(entry.getCreatedAt())
+                .build();
+    }
+
+    private record QueueKey(String masterId, LocalDate date) {
+
+        static QueueKey of(WaitlistEntry entry) {
+            return new QueueKey(entry.getMasterId(), entry.getDesiredDate());
+        }
+    }
+}
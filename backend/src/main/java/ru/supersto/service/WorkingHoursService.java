@@ -0,0 +1,166 @@
+package ru.supersto.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import ru.supersto.entity.ServiceStation;
+import ru.supersto.entity.WorkingHours;
+import ru.supersto.repository.ServiceStationRepository;
+import ru.supersto.util.Constants;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Недельные шаблоны рабочего времени СТО.
+ * Часы работы из ServiceStation разбираются один раз, шаблоны кэшируются до изменения станции.
+ * Событие изменения станции приходит только на узел, который ее сохранил, поэтому кэш живет не дольше
+ * templates-ttl-ms: остальные узлы подхватывают новые часы работы после истечения срока.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WorkingHoursService {
+
+    private static final DayTemplate DEFAULT_DAY = new DayTemplate(
+            LocalTime.of(Constants.Scheduling.DEFAULT_WORK_START_HOUR, 0),
+            LocalTime.of(Constants.Scheduling.DEFAULT_WORK_END_HOUR, 0));
+    private static final Map<DayOfWeek, DayTemplate> DEFAULT_WEEK = buildDefaultWeek();
+
+    private final ServiceStationRepository serviceStationRepository;
+
+    @Value("${app.scheduling.station-id:}")
+    private String configuredStationId;
+
+    @Value("${app.scheduling.templates-ttl-ms:60000}")
+    private long templatesTtlMs;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Templates templates;
+
+    /**
+     * Рабочее окно основной станции на дату (null - выходной)
+     */
+    public DayTemplate getDayTemplate(LocalDate date) {
+        Templates current = getTemplates();
+        return current.forStation(current.defaultStationId()).get(date.getDayOfWeek());
+    }
+
+    /**
+     * Рабочее окно станции на дату (null - выходной)
+     */
+    public DayTemplate getDayTemplate(String stationId, LocalDate date) {
+        return getTemplates().forStation(stationId).get(date.getDayOfWeek());
+    }
+
+    /**
+     * Помещается ли услуга целиком в рабочее время основной станции
+     */
+    public boolean isWorkingTime(LocalDateTime start, int durationMinutes) {
+        DayTemplate day = getDayTemplate(start.toLocalDate());
+        return day != null && day.covers(start, durationMinutes);
+    }
+
+    /**
+     * Сбросить шаблоны после изменения станций
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        templates = null;
+        log.debug("Шаблоны рабочего времени сброшены");
+    }
+
+    private Templates getTemplates() {
+        Templates current = templates;
+        if (current != null && System.currentTimeMillis() - current.loadedAt() < templatesTtlMs) {
+            return current;
+        }
+
+        long loadedGeneration = generation.get();
+        Templates loaded = loadTemplates();
+        // Станция могла измениться во время загрузки - такой результат не кэшируем
+        if (generation.get() == loadedGeneration) {
+            templates = loaded;
+        }
+        return loaded;
+    }
+
+    private Templates loadTemplates() {
+        List<ServiceStation> stations = serviceStationRepository.findAll(Sort.by(Sort.Direction.ASC, "id"));
+
+        Map<String, Map<DayOfWeek, DayTemplate>> byStation = new HashMap<>();
+        for (ServiceStation station : stations) {
+            byStation.put(station.getId(), buildWeek(station));
+        }
+
+        String defaultStationId = configuredStationId != null && byStation.containsKey(configuredStationId)
+                ? configuredStationId
+                : stations.isEmpty() ? null : stations.get(0).getId();
+
+        log.debug("Загружены шаблоны рабочего времени {} станций", byStation.size());
+        return new Templates(byStation, defaultStationId, System.currentTimeMillis());
+    }
+
+    private static Map<DayOfWeek, DayTemplate> buildDefaultWeek() {
+        Map<DayOfWeek, DayTemplate> week = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            week.put(dayOfWeek, DEFAULT_DAY);
+        }
+        return week;
+    }
+
+    private Map<DayOfWeek, DayTemplate> buildWeek(ServiceStation station) {
+        WorkingHours hours = station.getWorkingHours();
+        DayTemplate day = DEFAULT_DAY;
+        if (hours != null && hours.getStart() != null && hours.getEnd() != null) {
+            try {
+                day = new DayTemplate(LocalTime.parse(hours.getStart()), LocalTime.parse(hours.getEnd()));
+            } catch (DateTimeParseException e) {
+                log.warn("Некорректные часы работы станции {}: {} - {}", station.getName(),
+                        hours.getStart(), hours.getEnd());
+            }
+        }
+
+        Map<DayOfWeek, DayTemplate> week = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            boolean dayOff = hours != null && hours.getDaysOff() != null && hours.getDaysOff().contains(dayOfWeek);
+            if (!dayOff) {
+                week.put(dayOfWeek, day);
+            }
+        }
+        return week;
+    }
+
+    /**
+     * Рабочее окно одного дня недели
+     */
+    public record DayTemplate(LocalTime open, LocalTime close) {
+
+        public boolean covers(LocalDateTime start, int durationMinutes) {
+            LocalTime time = start.toLocalTime();
+            LocalDateTime end = start.plusMinutes(durationMinutes);
+            return !time.isBefore(open)
+                    && end.toLocalDate().equals(start.toLocalDate())
+                    && !end.toLocalTime().isAfter(close);
+        }
+    }
+
+    private record Templates(Map<String, Map<DayOfWeek, DayTemplate>> byStation, String defaultStationId,
+            long loadedAt) {
+
+        Map<DayOfWeek, DayTemplate> forStation(String stationId) {
+            Map<DayOfWeek, DayTemplate> week = stationId != null ? byStation.get(stationId) : null;
+            return week != null ? week : DEFAULT_WEEK;
+        }
+    }
+}
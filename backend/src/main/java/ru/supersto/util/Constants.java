@@ -43,6 +43,16 @@ public final class Constants {
         public static final long REFRESH_TOKEN_VALIDITY = 7 * 24 * 60 * 60 * 1000L; // 7 дней
     }
 
+    // WebSocket (STOMP)
+    public static final class WebSocket {
+        public static final String ENDPOINT = "/ws";
+        public static final String USER_PREFIX = "/user";
+        public static final String BROKER_PREFIX = "/queue";
+        public static final String APP_PREFIX = "/app";
+        public static final String CHAT_QUEUE = "/queue/chat"; // новые сообщения
+        public static final String CHAT_READ_QUEUE = "/queue/chat.read"; // отметки о прочтении
+    }
+
     // Файлы
     public static final class Files {
         public static final long MAX_IMAGE_SIZE = 5 * 1024 * 1024; // 5MB
@@ -114,12 +124,22 @@ public final class Constants {
     // Лимиты и ограничения
     public static final class Limits {
         public static final int MAX_APPOINTMENT_ADVANCE_DAYS = 30;
+        public static final int MAX_BULK_APPOINTMENTS = 200;
         public static final int MAX_ORDER_ITEMS = 50;
         public static final int MAX_CART_ITEMS = 20;
         public static final int MAX_SEARCH_RESULTS = 1000;
         public static final int MAX_NOTIFICATION_AGE_DAYS = 30;
     }
 
+    // Расписание мастеров
+    public static final class Scheduling {
+        public static final int SLOT_MINUTES = 5; // шаг битовой карты занятости
+        public static final int DEFAULT_WORK_START_HOUR = 9;
+        public static final int DEFAULT_WORK_END_HOUR = 18;
+        public static final long REMINDER_TICK_MILLIS = 60 * 1000; // тик колеса напоминаний
+        public static final int REMINDER_WHEEL_SIZE = 2048; // ~34 часа на оборот при тике в минуту
+    }
+
     // Форматы даты и времени
     public static final class DateFormats {
         public static final String DATE_TIME_PATTERN = "yyyy-MM-dd HH:mm:ss";
@@ -96,20 +96,6 @@ public final class DateUtils {
         return dateTime.isAfter(now) && dateTime.isBefore(maxFutureDate);
     }
 
-    /**
-     * Проверка, что время находится в рабочих часах (9:00 - 21:00)
-     */
-    public static boolean isWorkingHours(LocalTime time) {
-        if (time == null) {
-            return false;
-        }
-
-        LocalTime workStart = LocalTime.of(9, 0);
-        LocalTime workEnd = LocalTime.of(21, 0);
-
-        return !time.isBefore(workStart) && !time.isAfter(workEnd);
-    }
-
     /**
      * Получить начало дня
      */
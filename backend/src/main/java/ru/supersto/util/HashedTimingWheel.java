@@ -0,0 +1,120 @@
+package ru.supersto.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Хешированное колесо таймеров.
+ * Таймер кладется в ячейку по номеру тика срабатывания; таймеры дальше одного оборота колеса
+ * ждут в той же ячейке своего тика. За тик просматривается одна ячейка, поэтому стоимость тика
+ * не зависит от общего числа таймеров. Отмененные таймеры удаляются при следующем просмотре ячейки.
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<List<Timeout<T>>> buckets;
+    private final long startMillis;
+
+    private long currentTick;
+    private int pending;
+
+    /**
+     * @param tickMillis длительность тика
+     * @param wheelSize  число ячеек, округляется вверх до степени двойки
+     */
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Длительность тика и размер колеса должны быть положительными");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = Math.max(size, 1);
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * Запланировать задачу на момент deadlineMillis. Прошедший срок срабатывает на ближайшем тике.
+     */
+    public synchronized Timeout<T> schedule(T task, long deadlineMillis) {
+        long tick = Math.max(ceilDiv(deadlineMillis - startMillis, tickMillis), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(task, tick);
+        buckets.get((int) (tick & mask)).add(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Продвинуть колесо до момента nowMillis и вернуть задачи, чей срок наступил.
+     * После долгого простоя просматривается не больше одного оборота колеса.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        if (targetTick <= currentTick) {
+            return List.of();
+        }
+
+        List<T> due = new ArrayList<>();
+        long steps = Math.min(targetTick - currentTick, mask + 1L);
+        for (long step = 1; step <= steps; step++) {
+            List<Timeout<T>> bucket = buckets.get((int) ((currentTick + step) & mask));
+            bucket.removeIf(timeout -> {
+                if (timeout.cancelled) {
+                    pending--;
+                    return true;
+                }
+                if (timeout.tick <= targetTick) {
+                    due.add(timeout.task);
+                    pending--;
+                    return true;
+                }
+                return false;
+            });
+        }
+        currentTick = targetTick;
+        return due;
+    }
+
+    /**
+     * Число запланированных таймеров, включая еще не удаленные отмененные
+     */
+    public synchronized int size() {
+        return pending;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    /**
+     * Запланированная задача колеса
+     */
+    public static final class Timeout<T> {
+
+        private final T task;
+        private final long tick;
+        private volatile boolean cancelled;
+
+        private Timeout(T task, long tick) {
+            this.task = task;
+            this.tick = tick;
+        }
+
+        public T getTask() {
+            return task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
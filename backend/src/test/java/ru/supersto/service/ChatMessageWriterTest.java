@@ -0,0 +1,106 @@
+package ru.supersto.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import ru.supersto.entity.ChatMessage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageWriterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private ChatMessageWriter writer;
+
+    private final List<ChatMessage> afterWritten = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void write_BatchPartiallyFailed_RunsAfterWriteOnlyForSavedMessages() throws InterruptedException {
+        // Arrange: без ожидания подтверждения все три сообщения попадают в один пакет
+        writer = startWriter(false, 200);
+        ChatMessage alreadyWritten = message("m1");
+        ChatMessage retried = message("m2");
+        ChatMessage failed = message("m3");
+        when(mongoTemplate.insert(anyCollection(), eq(ChatMessage.class)))
+                .thenThrow(new DataAccessResourceFailureException("batch interrupted"));
+        when(mongoTemplate.exists(any(Query.class), eq(ChatMessage.class))).thenReturn(true, false, false);
+        when(mongoTemplate.insert(retried)).thenReturn(retried);
+        when(mongoTemplate.insert(failed)).thenThrow(new DuplicateKeyException("duplicate"));
+
+        // Act
+        writer.write(alreadyWritten, afterWritten::add);
+        writer.write(retried, afterWritten::add);
+        writer.write(failed, afterWritten::add);
+        writer.stop();
+
+        // Assert
+        assertEquals(List.of(alreadyWritten, retried), afterWritten);
+        verify(mongoTemplate, never()).insert(alreadyWritten);
+        verify(mongoTemplate).insert(retried);
+        verify(mongoTemplate).insert(failed);
+    }
+
+    @Test
+    void write_WaitingCallerMessageFailed_ThrowsCauseWithoutAfterWrite() {
+        // Arrange
+        writer = startWriter(true, 5);
+        ChatMessage failed = message("m1");
+        when(mongoTemplate.insert(anyCollection(), eq(ChatMessage.class)))
+                .thenThrow(new DataAccessResourceFailureException("batch interrupted"));
+        when(mongoTemplate.exists(any(Query.class), eq(ChatMessage.class))).thenReturn(false);
+        when(mongoTemplate.insert(failed)).thenThrow(new DuplicateKeyException("duplicate"));
+
+        // Act & Assert
+        assertThrows(DuplicateKeyException.class, () -> writer.write(failed, afterWritten::add));
+        assertTrue(afterWritten.isEmpty());
+    }
+
+    @Test
+    void write_WaitingCallerBatchWritten_RunsAfterWriteOnce() throws InterruptedException {
+        // Arrange
+        writer = startWriter(true, 5);
+        ChatMessage message = message("m1");
+
+        // Act
+        ChatMessage saved = writer.write(message, afterWritten::add);
+        writer.stop();
+
+        // Assert
+        assertSame(message, saved);
+        assertEquals(List.of(message), afterWritten);
+        verify(mongoTemplate).insert(anyCollection(), eq(ChatMessage.class));
+        verify(mongoTemplate, never()).insert(message);
+    }
+
+    private ChatMessageWriter startWriter(boolean waitForAck, long flushIntervalMs) {
+        ChatMessageWriter started = new ChatMessageWriter(mongoTemplate, Runnable::run, true, waitForAck,
+                10, flushIntervalMs, 100, 2000);
+        started.start();
+        return started;
+    }
+
+    private static ChatMessage message(String id) {
+        return ChatMessage.builder().id(id).content("Сообщение " + id).build();
+    }
+}
@@ -0,0 +1,196 @@
+package ru.supersto.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.supersto.entity.Appointment;
+import ru.supersto.entity.AppointmentStatus;
+import ru.supersto.entity.Service;
+import ru.supersto.entity.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MasterAvailabilityServiceTest {
+
+    private static final String MASTER_ID = "master-id";
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 16);
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ServiceService serviceService;
+
+    @InjectMocks
+    private MasterAvailabilityService availabilityService;
+
+    @BeforeEach
+    void setUp() {
+        // Дни загружаются пустыми, записи добавляются в индекс напрямую
+        ReflectionTestUtils.setField(availabilityService, "availabilityTtlMs", 3_600_000L);
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(List.of());
+        availabilityService.preload(List.of(MASTER_ID), DATE, DATE.plusDays(1));
+    }
+
+    @Test
+    void findFreeSlots_BookingInsideWindow_SkipsItAndKeepsStepGrid() {
+        // Arrange
+        availabilityService.addBooking(appointment("a", DATE.atTime(10, 30), 60));
+
+        // Act
+        List<LocalDateTime> slots = availabilityService.findFreeSlots(MASTER_ID, DATE, 60,
+                LocalTime.of(9, 0), LocalTime.of(13, 0), 60);
+
+        // Assert: 10:00 пересекается с записью, 11:00 - тоже, после 11:30 первый узел сетки - 12:00
+        assertEquals(List.of(DATE.atTime(9, 0), DATE.atTime(12, 0)), slots);
+    }
+
+    @Test
+    void findFreeSlots_GapEndsAtWorkEnd_IncludesLastFittingStart() {
+        // Act
+        List<LocalDateTime> slots = availabilityService.findFreeSlots(MASTER_ID, DATE, 60,
+                LocalTime.of(9, 0), LocalTime.of(12, 0), 60);
+
+        // Assert
+        assertEquals(List.of(DATE.atTime(9, 0), DATE.atTime(10, 0), DATE.atTime(11, 0)), slots);
+    }
+
+    @Test
+    void addBooking_PastMidnight_ClampedToEndOfDay() {
+        // Arrange
+        availabilityService.addBooking(appointment("late", DATE.atTime(23, 0), 120));
+
+        // Act
+        boolean lastSlotFree = availabilityService.isFree(MASTER_ID, DATE.atTime(23, 55), 5);
+        boolean nextMorningFree = availabilityService.isFree(MASTER_ID, DATE.plusDays(1).atStartOfDay(), 60);
+        List<MasterAvailabilityService.FreeGap> gaps = availabilityService.findFreeGaps(MASTER_ID, DATE,
+                LocalTime.of(22, 0), LocalTime.of(23, 55));
+
+        // Assert: занят только остаток дня, следующий день не затронут
+        assertFalse(lastSlotFree);
+        assertTrue(nextMorningFree);
+        assertEquals(60, availabilityService.bookedMinutes(MASTER_ID, DATE, DATE.plusDays(1)));
+        assertEquals(1, gaps.size());
+        assertEquals(DATE.atTime(22, 0), gaps.get(0).start());
+        assertEquals(DATE.atTime(23, 0), gaps.get(0).end());
+    }
+
+    @Test
+    void isFree_BookingAtMidnight_BusyFromFirstSlot() {
+        // Arrange
+        availabilityService.addBooking(appointment("early", DATE.atStartOfDay(), 30));
+
+        // Act & Assert
+        assertFalse(availabilityService.isFree(MASTER_ID, DATE.atStartOfDay(), 5));
+        assertFalse(availabilityService.isFree(MASTER_ID, DATE.atTime(0, 25), 10));
+        assertTrue(availabilityService.isFree(MASTER_ID, DATE.atTime(0, 30), 30));
+    }
+
+    @Test
+    void findFreeGaps_BookingsAtWindowEdges_ReturnsOnlyMiddleGap() {
+        // Arrange
+        availabilityService.addBooking(appointment("first", DATE.atTime(9, 0), 60));
+        availabilityService.addBooking(appointment("last", DATE.atTime(17, 0), 60));
+
+        // Act
+        List<MasterAvailabilityService.FreeGap> gaps = availabilityService.findFreeGaps(MASTER_ID, DATE,
+                LocalTime.of(9, 0), LocalTime.of(18, 0));
+
+        // Assert
+        assertEquals(1, gaps.size());
+        assertEquals(DATE.atTime(10, 0), gaps.get(0).start());
+        assertEquals(DATE.atTime(17, 0), gaps.get(0).end());
+    }
+
+    @Test
+    void removeBooking_OverlappingBookings_KeepsOtherBookingBusy() {
+        // Arrange
+        Appointment first = appointment("first", DATE.atTime(10, 0), 60);
+        availabilityService.addBooking(first);
+        availabilityService.addBooking(appointment("second", DATE.atTime(10, 30), 60));
+
+        // Act
+        availabilityService.removeBooking(first);
+
+        // Assert
+        assertTrue(availabilityService.isFree(MASTER_ID, DATE.atTime(10, 0), 30));
+        assertFalse(availabilityService.isFree(MASTER_ID, DATE.atTime(10, 30), 5));
+        MasterAvailabilityService.BookedInterval conflict = availabilityService.findConflict(MASTER_ID,
+                DATE.atTime(10, 45), 15, null);
+        assertNotNull(conflict);
+        assertEquals(DATE.atTime(10, 30), conflict.start());
+        assertEquals(DATE.atTime(11, 30), conflict.end());
+    }
+
+    @Test
+    void findConflict_OwnBooking_IsIgnored() {
+        // Arrange
+        availabilityService.addBooking(appointment("own", DATE.atTime(14, 0), 60));
+
+        // Act & Assert
+        assertNull(availabilityService.findConflict(MASTER_ID, DATE.atTime(14, 0), 60, "own"));
+        assertNotNull(availabilityService.findConflict(MASTER_ID, DATE.atTime(14, 0), 60, "other"));
+    }
+
+    @Test
+    void addBooking_DuringDayLoad_AppliedAfterLoad() throws InterruptedException {
+        // Arrange: запись приходит, пока день читается из базы, и в прочитанных записях ее еще нет
+        LocalDate unloaded = DATE.plusDays(2);
+        Thread writer = new Thread(() -> availabilityService.addBooking(
+                appointment("racing", unloaded.atTime(10, 0), 60)));
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenAnswer(invocation -> {
+            writer.start();
+            while (writer.getState() != Thread.State.WAITING && writer.isAlive()) {
+                Thread.onSpinWait();
+            }
+            return List.of();
+        });
+
+        // Act
+        availabilityService.preload(List.of(MASTER_ID), unloaded, unloaded.plusDays(1));
+        writer.join(1000);
+
+        // Assert: запись не потеряна, хотя чтение дня закончилось раньше ее применения
+        assertFalse(writer.isAlive());
+        assertFalse(availabilityService.isFree(MASTER_ID, unloaded.atTime(10, 0), 60));
+    }
+
+    @Test
+    void isFree_DayExpired_ReloadsFromDatabase() {
+        // Arrange: в памяти запись этого узла, в базе - запись другого узла
+        availabilityService.addBooking(appointment("local", DATE.atTime(9, 0), 60));
+        Appointment remote = appointment("remote", DATE.atTime(15, 0), 60);
+        when(mongoTemplate.find(any(Query.class), eq(Appointment.class))).thenReturn(List.of(remote));
+        when(serviceService.findDurationsByIds(anySet())).thenReturn(Map.of("service-remote", 60));
+        ReflectionTestUtils.setField(availabilityService, "availabilityTtlMs", 0L);
+
+        // Act & Assert
+        assertFalse(availabilityService.isFree(MASTER_ID, DATE.atTime(15, 0), 60));
+        assertTrue(availabilityService.isFree(MASTER_ID, DATE.atTime(9, 0), 60));
+    }
+
+    private Appointment appointment(String id, LocalDateTime start, int durationMinutes) {
+        return Appointment.builder()
+                .id(id)
+                .master(User.builder().id(MASTER_ID).build())
+                .service(Service.builder().id("service-" + id).duration(durationMinutes).build())
+                .appointmentDate(start)
+                .status(AppointmentStatus.PENDING)
+                .build();
+    }
+}
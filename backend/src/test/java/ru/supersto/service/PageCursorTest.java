@@ -0,0 +1,79 @@
+package ru.supersto.service;
+
+import org.junit.jupiter.api.Test;
+import ru.supersto.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void encodeDecode_RoundTrip_RestoresPosition() {
+        // Arrange
+        ChatService.PageCursor cursor = new ChatService.PageCursor(
+                LocalDateTime.of(2026, 3, 16, 10, 15, 30, 123_456_789), "65f1c2a3b4d5e6f708192a3b");
+
+        // Act
+        ChatService.PageCursor decoded = ChatService.PageCursor.decode(cursor.encode());
+
+        // Assert
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void encode_ProducesUrlSafeTokenWithoutPadding() {
+        // Arrange
+        ChatService.PageCursor cursor = new ChatService.PageCursor(LocalDateTime.of(2026, 1, 1, 0, 0), "id?/+");
+
+        // Act
+        String encoded = cursor.encode();
+
+        // Assert
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+        assertEquals(cursor, ChatService.PageCursor.decode(encoded));
+    }
+
+    @Test
+    void decode_IdContainingSeparator_KeepsWholeId() {
+        // Arrange
+        ChatService.PageCursor cursor = new ChatService.PageCursor(LocalDateTime.of(2026, 1, 1, 12, 0), "a|b");
+
+        // Act
+        ChatService.PageCursor decoded = ChatService.PageCursor.decode(cursor.encode());
+
+        // Assert
+        assertEquals("a|b", decoded.id());
+    }
+
+    @Test
+    void decode_NotBase64_ThrowsBusinessException() {
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> ChatService.PageCursor.decode("not base64!"));
+    }
+
+    @Test
+    void decode_MissingSeparator_ThrowsBusinessException() {
+        // Arrange
+        String cursor = encodeRaw("2026-01-01T00:00");
+
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> ChatService.PageCursor.decode(cursor));
+    }
+
+    @Test
+    void decode_InvalidDate_ThrowsBusinessException() {
+        // Arrange
+        String cursor = encodeRaw("yesterday|65f1c2a3b4d5e6f708192a3b");
+
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> ChatService.PageCursor.decode(cursor));
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
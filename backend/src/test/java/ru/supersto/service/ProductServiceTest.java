@@ -0,0 +1,182 @@
+package ru.supersto.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import ru.supersto.dto.ProductDTO;
+import ru.supersto.entity.Product;
+import ru.supersto.exception.BusinessException;
+import ru.supersto.exception.ResourceNotFoundException;
+import ru.supersto.repository.ProductRepository;
+import ru.supersto.util.Constants;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ResponseCacheService responseCacheService;
+
+    @Mock
+    private StockAvailabilityService stockAvailabilityService;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private BulkOperations reserveBulk;
+
+    @Mock
+    private BulkOperations releaseBulk;
+
+    @Mock
+    private BulkWriteResult reserveResult;
+
+    @InjectMocks
+    private ProductService productService;
+
+    private Product oil;
+    private Product filter;
+    private Map<String, Integer> quantities;
+
+    @BeforeEach
+    void setUp() {
+        oil = Product.builder().id("oil-id").name("Масло").quantity(10).isActive(true).build();
+        filter = Product.builder().id("filter-id").name("Фильтр").quantity(5).isActive(true).build();
+
+        quantities = new LinkedHashMap<>();
+        quantities.put("oil-id", 2);
+        quantities.put("filter-id", 3);
+
+        when(stockAvailabilityService.isAvailable(anyString(), anyInt())).thenReturn(true);
+        when(productRepository.findAllById(quantities.keySet())).thenReturn(List.of(oil, filter));
+    }
+
+    @Test
+    void reserveStock_AllMatched_ReservesInOneBulkAndEvictsAffectedProducts() {
+        // Arrange
+        Cache cache = mock(Cache.class);
+        when(cacheManager.getCache(Constants.Cache.PRODUCT_CACHE)).thenReturn(cache);
+        stubReserveBulk(2);
+
+        // Act
+        Map<String, ProductDTO> reserved = productService.reserveStock(quantities);
+
+        // Assert
+        assertEquals(8, reserved.get("oil-id").getQuantity());
+        assertEquals(2, reserved.get("filter-id").getQuantity());
+        verify(reserveBulk, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(reserveBulk).execute();
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Product.class));
+        verify(stockAvailabilityService).adjust("oil-id", -2);
+        verify(stockAvailabilityService).adjust("filter-id", -3);
+        verify(cache).evict("oil-id");
+        verify(cache).evict("filter-id");
+        verify(cache).evict("all");
+        verify(cache, never()).clear();
+        verify(responseCacheService).invalidateProducts(List.of("oil-id", "filter-id"));
+        verify(responseCacheService, never()).invalidate(ResponseCacheService.PRODUCTS_GROUP);
+    }
+
+    @Test
+    void reserveStock_SecondNotMatched_ReleasesFirstAndReportsShortage() {
+        // Arrange
+        stubReserveBulk(1);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(idOnly("oil-id")));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(releaseBulk);
+        Product drained = Product.builder().id("filter-id").name("Фильтр").quantity(1).build();
+        when(productRepository.findById("filter-id")).thenReturn(Optional.of(drained));
+
+        // Act
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> productService.reserveStock(quantities));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("Фильтр"));
+        verify(releaseBulk, times(1)).updateOne(any(Query.class), any(Update.class));
+        verify(releaseBulk).execute();
+        verify(stockAvailabilityService).adjust("oil-id", 2);
+        verify(stockAvailabilityService, never()).adjust(anyString(), eq(-2));
+        verify(stockAvailabilityService, never()).adjust(eq("filter-id"), anyInt());
+    }
+
+    @Test
+    void reserveStock_ProductDeletedConcurrently_ReleasesFirstWithoutUpsert() {
+        // Arrange
+        stubReserveBulk(1);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(idOnly("oil-id")));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(releaseBulk);
+        when(productRepository.findById("filter-id")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> productService.reserveStock(quantities));
+        verify(reserveBulk, never()).upsert(any(Query.class), any(Update.class));
+        verify(releaseBulk).execute();
+        verify(stockAvailabilityService).adjust("oil-id", 2);
+    }
+
+    @Test
+    void reserveStock_BulkFails_ReleasesAppliedAndRethrows() {
+        // Arrange
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Product.class)).thenReturn(reserveBulk);
+        when(reserveBulk.execute()).thenThrow(new DataAccessResourceFailureException("connection lost"));
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of(idOnly("oil-id")));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(releaseBulk);
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> productService.reserveStock(quantities));
+        verify(releaseBulk, times(1)).updateOne(any(Query.class), any(Update.class));
+        verify(stockAvailabilityService).adjust("oil-id", 2);
+        verify(productRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void reserveStock_NothingMatched_NothingToRelease() {
+        // Arrange
+        stubReserveBulk(0);
+        when(mongoTemplate.find(any(Query.class), eq(Product.class))).thenReturn(List.of());
+        Product drained = Product.builder().id("oil-id").name("Масло").quantity(0).build();
+        when(productRepository.findById("oil-id")).thenReturn(Optional.of(drained));
+
+        // Act & Assert
+        assertThrows(BusinessException.class, () -> productService.reserveStock(quantities));
+        verify(mongoTemplate, never()).bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        verify(stockAvailabilityService, never()).adjust(anyString(), anyInt());
+    }
+
+    private void stubReserveBulk(int matchedCount) {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Product.class)).thenReturn(reserveBulk);
+        when(reserveBulk.execute()).thenReturn(reserveResult);
+        when(reserveResult.getMatchedCount()).thenReturn(matchedCount);
+    }
+
+    private static Product idOnly(String id) {
+        return Product.builder().id(id).build();
+    }
+}
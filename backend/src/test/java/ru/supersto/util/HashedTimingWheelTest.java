@@ -0,0 +1,129 @@
+package ru.supersto.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 8;
+
+    private HashedTimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HashedTimingWheel<>(TICK_MILLIS, WHEEL_SIZE, 0);
+    }
+
+    @Test
+    void advance_DeadlineBetweenTicks_FiresOnNextTick() {
+        // Arrange
+        wheel.schedule("task", 250);
+
+        // Act
+        List<String> beforeTick = wheel.advance(299);
+        List<String> onTick = wheel.advance(300);
+
+        // Assert
+        assertTrue(beforeTick.isEmpty());
+        assertEquals(List.of("task"), onTick);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_DeadlineBeyondOneRound_WaitsForItsTick() {
+        // Arrange: тик 10 попадает в ячейку 2, которая просматривается еще на тике 2
+        wheel.schedule("task", 1000);
+
+        // Act
+        List<String> firstVisit = wheel.advance(200);
+        List<String> beforeDeadline = wheel.advance(999);
+        List<String> onDeadline = wheel.advance(1000);
+
+        // Assert
+        assertTrue(firstVisit.isEmpty());
+        assertTrue(beforeDeadline.isEmpty());
+        assertEquals(List.of("task"), onDeadline);
+    }
+
+    @Test
+    void schedule_PastDeadline_FiresOnNextTick() {
+        // Arrange
+        wheel.advance(500);
+
+        // Act
+        wheel.schedule("late", 100);
+
+        // Assert
+        assertTrue(wheel.advance(599).isEmpty());
+        assertEquals(List.of("late"), wheel.advance(600));
+    }
+
+    @Test
+    void advance_LongIdle_ReturnsAllDueTimers() {
+        // Arrange
+        wheel.schedule("near", 300);
+        wheel.schedule("far", 5000);
+
+        // Act: после простоя больше оборота колеса просматривается один оборот
+        List<String> due = wheel.advance(100_000);
+
+        // Assert
+        assertEquals(2, due.size());
+        assertTrue(due.containsAll(List.of("near", "far")));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_CancelledTimer_IsNotReturnedAndIsRemoved() {
+        // Arrange
+        HashedTimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 300);
+        wheel.schedule("kept", 300);
+        cancelled.cancel();
+
+        // Act
+        int sizeBeforeAdvance = wheel.size();
+        List<String> due = wheel.advance(300);
+
+        // Assert
+        assertEquals(2, sizeBeforeAdvance);
+        assertTrue(cancelled.isCancelled());
+        assertEquals(List.of("kept"), due);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_SameOrEarlierTime_ReturnsNothing() {
+        // Arrange
+        wheel.schedule("task", 300);
+        wheel.advance(200);
+
+        // Act & Assert
+        assertTrue(wheel.advance(200).isEmpty());
+        assertTrue(wheel.advance(150).isEmpty());
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void constructor_NonPowerOfTwoSize_RoundsUp() {
+        // Arrange: 5 ячеек округляются до 8, тик 9 попадает в ячейку 1 и не срабатывает на тике 1
+        HashedTimingWheel<String> rounded = new HashedTimingWheel<>(TICK_MILLIS, 5, 0);
+        rounded.schedule("task", 900);
+
+        // Act & Assert
+        assertTrue(rounded.advance(100).isEmpty());
+        assertTrue(rounded.advance(800).isEmpty());
+        assertEquals(List.of("task"), rounded.advance(900));
+    }
+
+    @Test
+    void constructor_InvalidArguments_ThrowsException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(0, 8, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel<String>(100, 0, 0));
+    }
+}
@@ -9,6 +9,10 @@ export const chatAPI = {
   getConversation: (userId: string): Promise<{ data: ChatMessage[] }> =>
     client.get(`/chat/conversation/${userId}`),
   
+  // Отметить переписку с пользователем как прочитанную
+  markConversationAsRead: (userId: string): Promise<{ data: number }> =>
+    client.put(`/chat/conversation/${userId}/read`),
+  
   // Получить все мои переписки
   getConversations: () => client.get('/chat/conversations'),
   
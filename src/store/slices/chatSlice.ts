@@ -30,6 +30,7 @@ export const fetchMessages = createAsyncThunk(
   'chat/fetchMessages',
   async (userId: string) => {
     const response = await chatAPI.getConversation(userId);
+    await chatAPI.markConversationAsRead(userId);
     return response.data;
   }
 );